@@ -0,0 +1,75 @@
+import models.Book;
+import models.Patron;
+import models.Transaction;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Borrows and returns random books for random patrons from 1, 4 and 16 threads at once and
+// prints the throughput of each, so contention between desks shows up as a flat or falling
+// line. Every borrow that succeeds is returned, so the catalog stays mostly available.
+// Run from the project root:
+//   java BorrowReturnBenchmark [operations per thread count] [books]
+public class BorrowReturnBenchmark {
+    private static final int DEFAULT_OPERATIONS = 400_000;
+    private static final int DEFAULT_BOOKS = 10_000;
+    private static final int PATRONS = 1_000;
+    private static final int[] THREADS = {1, 4, 16};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS;
+        int bookCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BOOKS;
+        LibraryManager manager = new LibraryManager();
+        String[] bookIds = new String[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Book book = manager.addBook("Title " + i, "Author " + (i % 500), "isbn-" + i, "2001-01-01", "fiction");
+            bookIds[i] = book.getId();
+        }
+        String[] patronIds = new String[PATRONS];
+        for (int i = 0; i < PATRONS; i++) {
+            Patron patron = manager.addPatron("Patron " + i, "patron" + i + "@example.org", "Street " + i, "2020-01-01");
+            patronIds[i] = patron.getId();
+        }
+
+        System.out.printf("%,d books, %,d patrons, %d available processors%n",
+                bookCount, PATRONS, Runtime.getRuntime().availableProcessors());
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: %,d borrow or return calls per thread count%n", round, operations);
+            for (int threads : THREADS) {
+                AtomicLong lent = new AtomicLong();
+                CountDownLatch start = new CountDownLatch(1);
+                Thread[] desks = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    int share = operations / threads / 2;
+                    desks[t] = new Thread(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < share; i++) {
+                            Transaction loan = manager.borrowBook(bookIds[random.nextInt(bookIds.length)],
+                                    patronIds[random.nextInt(patronIds.length)], 14);
+                            if (loan != null) {
+                                lent.incrementAndGet();
+                                manager.returnBook(loan.getId());
+                            }
+                        }
+                    });
+                    desks[t].start();
+                }
+                long begin = System.nanoTime();
+                start.countDown();
+                for (Thread desk : desks) {
+                    desk.join();
+                }
+                long nanos = System.nanoTime() - begin;
+                System.out.printf("  %2d threads: %6.0f ms, %,10.0f calls/s, %,d loans%n",
+                        threads, nanos / 1e6, operations / (nanos / 1e9), lent.get());
+            }
+        }
+    }
+}
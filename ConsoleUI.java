@@ -3,16 +3,26 @@ import models.Patron;
 import models.Reservation;
 import models.Transaction;
 import datastructures.LinkedList;
+import services.UpdateResult;
+import utils.TextMatcher;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Scanner;
+import java.util.function.Predicate;
 
 public class ConsoleUI {
     private LibraryManager libraryManager;
     private Scanner scanner;
     private boolean running;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int SUGGESTION_LIMIT = 5;
+    private static final int MAX_FUZZY_DISTANCE = 3;
+    private static final int HISTORY_LIMIT = 10;
+    private static final int PAGE_SIZE = 10;
+    private static final int RESULT_LIMIT = 20;
 
     public ConsoleUI(LibraryManager libraryManager) {
         this.libraryManager = libraryManager;
@@ -85,6 +95,7 @@ public class ConsoleUI {
             System.out.println("6. View Books Sorted by Title");
             System.out.println("7. View Books Sorted by Author");
             System.out.println("8. View Books Sorted by Publication Date");
+            System.out.println("9. Export Sorted Catalog");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
@@ -114,6 +125,9 @@ public class ConsoleUI {
                 case 8:
                     viewBooksSortedByPublicationDate();
                     break;
+                case 9:
+                    exportCatalog();
+                    break;
                 case 0:
                     backToMain = true;
                     break;
@@ -144,12 +158,10 @@ public class ConsoleUI {
     private void viewAllBooks() {
         System.out.println("\n=== ALL BOOKS ===");
         
-        LinkedList<Book> books = libraryManager.getAllBooks();
-        
-        if (books.isEmpty()) {
+        if (libraryManager.getBookCount() == 0) {
             System.out.println("No books found in the library.");
         } else {
-            displayBookList(books);
+            displayBookPages(libraryManager.getBookCount(), libraryManager::getBooksPage);
         }
     }
 
@@ -173,6 +185,8 @@ public class ConsoleUI {
         Book book = libraryManager.findBookById(bookId);
         
         if (book != null) {
+            // The edit is saved only if nobody changes the book while these details are on screen
+            long version = book.getVersion();
             System.out.println("Current book details:");
             displayBook(book);
             System.out.println("\nEnter new details (leave blank to keep current value):");
@@ -183,8 +197,14 @@ public class ConsoleUI {
             String publicationDate = getStringInput("Enter new publication date (yyyy-MM-dd): ");
             String genre = getStringInput("Enter new genre: ");
             
-            libraryManager.updateBook(bookId, title, author, isbn, publicationDate, genre);
-            System.out.println("Book updated successfully.");
+            UpdateResult result = libraryManager.updateBook(bookId, version, title, author, isbn, publicationDate, genre);
+            if (result == UpdateResult.UPDATED) {
+                System.out.println("Book updated successfully.");
+            } else if (result == UpdateResult.CONFLICT) {
+                System.out.println("The book was changed at another desk while you were editing. Nothing was saved; please review the new details and try again.");
+            } else if (result == UpdateResult.NOT_FOUND) {
+                System.out.println("Book not found with ID: " + bookId);
+            }
         } else {
             System.out.println("Book not found with ID: " + bookId);
         }
@@ -207,27 +227,23 @@ public class ConsoleUI {
     private void viewBooksSortedByTitle() {
         System.out.println("\n=== BOOKS SORTED BY TITLE ===");
         
-        LinkedList<Book> books = libraryManager.getAllBooks();
-        if (books.isEmpty()) {
+        if (libraryManager.getBookCount() == 0) {
             System.out.println("No books found in the library.");
             return;
         }
         
-        LinkedList<Book> sortedBooks = libraryManager.sortBooksByTitle(books);
-        displayBookList(sortedBooks);
+        displayBookPages(libraryManager.getBookCount(), libraryManager::getBooksSortedByTitle);
     }
 
     private void viewBooksSortedByAuthor() {
         System.out.println("\n=== BOOKS SORTED BY AUTHOR ===");
         
-        LinkedList<Book> books = libraryManager.getAllBooks();
-        if (books.isEmpty()) {
+        if (libraryManager.getBookCount() == 0) {
             System.out.println("No books found in the library.");
             return;
         }
         
-        LinkedList<Book> sortedBooks = libraryManager.sortBooksByAuthor(books);
-        displayBookList(sortedBooks);
+        displayBookPages(libraryManager.getBookCount(), libraryManager::getBooksSortedByAuthor);
     }
 
     private void viewBooksSortedByPublicationDate() {
@@ -239,8 +255,34 @@ public class ConsoleUI {
             return;
         }
         
-        LinkedList<Book> sortedBooks = libraryManager.sortBooksByPublicationDate(books);
-        displayBookList(sortedBooks);
+        Book[] sortedBooks = libraryManager.sortBooksByPublicationDate(books).stream().toArray(Book[]::new);
+        displayBookPages(sortedBooks.length, arrayPages(sortedBooks));
+    }
+
+    private void exportCatalog() {
+        System.out.println("\n=== EXPORT SORTED CATALOG ===");
+        System.out.println("1. By Title");
+        System.out.println("2. By Author");
+        System.out.println("3. By Publication Date");
+        
+        int order = getIntInput("Choose sort order: ");
+        if (order < 1 || order > 3) {
+            System.out.println("Invalid choice.");
+            return;
+        }
+        Path target = Paths.get(getStringInput("Enter file to write (CSV): "));
+        
+        boolean exported;
+        if (order == 1) {
+            exported = libraryManager.exportBooksByTitle(target);
+        } else if (order == 2) {
+            exported = libraryManager.exportBooksByAuthor(target);
+        } else {
+            exported = libraryManager.exportBooksByPublicationDate(target);
+        }
+        if (exported) {
+            System.out.println("Catalog exported to " + target.toAbsolutePath());
+        }
     }
 
     // PATRON MANAGEMENT MENU
@@ -318,16 +360,16 @@ public class ConsoleUI {
             displayPatron(patron);
             
             // Show borrowing history
-            System.out.println("\nBorrowing History:");
-            LinkedList<Transaction> transactions = libraryManager.getTransactionsByPatronId(patronId);
+            System.out.println("\nRecent Borrowing History:");
+            LinkedList<Transaction> transactions = libraryManager.getTransactionsByPatronId(patronId, 0, HISTORY_LIMIT);
             
             if (transactions.isEmpty()) {
                 System.out.println("No borrowing history found.");
             } else {
-                for (int i = 0; i < transactions.size(); i++) {
-                    Transaction transaction = transactions.get(i);
-                    Book book = libraryManager.findBookById(transaction.getBookId());
-                    System.out.println((i + 1) + ". " + book.getTitle() + 
+                int position = 1;
+                for (Transaction transaction : transactions) {
+                    Book book = libraryManager.findBookByKey(transaction.getBookKey());
+                    System.out.println((position++) + ". " + book.getTitle() + 
                             " (Borrowed: " + transaction.getBorrowDate() + 
                             ", Due: " + transaction.getDueDate() + 
                             ", Returned: " + (transaction.isReturned() ? transaction.getReturnDate() : "Not yet") + ")");
@@ -341,12 +383,12 @@ public class ConsoleUI {
             if (reservations.isEmpty()) {
                 System.out.println("No active reservations found.");
             } else {
-                for (int i = 0; i < reservations.size(); i++) {
-                    Reservation reservation = reservations.get(i);
-                    Book book = libraryManager.findBookById(reservation.getBookId());
-                    System.out.println((i + 1) + ". " + book.getTitle() + 
+                int position = 1;
+                for (Reservation reservation : reservations) {
+                    Book book = libraryManager.findBookByKey(reservation.getBookKey());
+                    System.out.println((position++) + ". " + book.getTitle() + 
                             " (Reserved on: " + reservation.getReservationDate() + 
-                            ", Queue Position: " + libraryManager.getQueuePosition(book.getId(), patronId) + ")");
+                            ", Queue Position: " + libraryManager.getQueuePosition(reservation) + ")");
                 }
             }
         } else {
@@ -361,6 +403,7 @@ public class ConsoleUI {
         Patron patron = libraryManager.findPatronById(patronId);
         
         if (patron != null) {
+            long version = patron.getVersion();
             System.out.println("Current patron details:");
             displayPatron(patron);
             System.out.println("\nEnter new details (leave blank to keep current value):");
@@ -369,8 +412,14 @@ public class ConsoleUI {
             String contactInfo = getStringInput("Enter new contact info: ");
             String address = getStringInput("Enter new address: ");
             
-            libraryManager.updatePatron(patronId, name, contactInfo, address, "");
-            System.out.println("Patron updated successfully.");
+            UpdateResult result = libraryManager.updatePatron(patronId, version, name, contactInfo, address, "");
+            if (result == UpdateResult.UPDATED) {
+                System.out.println("Patron updated successfully.");
+            } else if (result == UpdateResult.CONFLICT) {
+                System.out.println("The patron was changed at another desk while you were editing. Nothing was saved; please review the new details and try again.");
+            } else if (result == UpdateResult.NOT_FOUND) {
+                System.out.println("Patron not found with ID: " + patronId);
+            }
         } else {
             System.out.println("Patron not found with ID: " + patronId);
         }
@@ -401,6 +450,7 @@ public class ConsoleUI {
             System.out.println("3. View All Transactions");
             System.out.println("4. View Active Borrows");
             System.out.println("5. View Overdue Books");
+            System.out.println("6. Change Due Date");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
@@ -421,6 +471,9 @@ public class ConsoleUI {
                 case 5:
                     viewOverdueBooks();
                     break;
+                case 6:
+                    changeDueDate();
+                    break;
                 case 0:
                     backToMain = true;
                     break;
@@ -447,7 +500,7 @@ public class ConsoleUI {
             // Show the patron if there's a reservation queue
             Reservation nextReservation = libraryManager.getNextReservation(bookId);
             if (nextReservation != null) {
-                Patron reservedBy = libraryManager.findPatronById(nextReservation.getPatronId());
+                Patron reservedBy = libraryManager.findPatronByKey(nextReservation.getPatronKey());
                 System.out.println("This book is reserved by: " + reservedBy.getName());
             }
             
@@ -461,7 +514,7 @@ public class ConsoleUI {
                     Reservation reservation = libraryManager.reserveBook(bookId, patronId);
                     if (reservation != null) {
                         System.out.println("Book reserved successfully. Reservation ID: " + reservation.getId());
-                        System.out.println("Queue position: " + libraryManager.getQueuePosition(bookId, patronId));
+                        System.out.println("Queue position: " + libraryManager.getQueuePosition(reservation));
                     } else {
                         System.out.println("Failed to reserve book.");
                     }
@@ -521,8 +574,7 @@ public class ConsoleUI {
             LinkedList<Transaction> patronTransactions = libraryManager.getTransactionsByPatronId(patronId);
             Transaction targetTransaction = null;
             
-            for (int i = 0; i < patronTransactions.size(); i++) {
-                Transaction transaction = patronTransactions.get(i);
+            for (Transaction transaction : patronTransactions) {
                 if (!transaction.isReturned() && transaction.getBookId().equals(bookId)) {
                     targetTransaction = transaction;
                     break;
@@ -545,7 +597,7 @@ public class ConsoleUI {
             // Check if there are any reservations for this book
             Reservation nextReservation = libraryManager.getNextReservation(bookId);
             if (nextReservation != null) {
-                Patron reservedBy = libraryManager.findPatronById(nextReservation.getPatronId());
+                Patron reservedBy = libraryManager.findPatronByKey(nextReservation.getPatronKey());
                 System.out.println("This book is reserved by: " + reservedBy.getName());
                 System.out.println("Reservation ID: " + nextReservation.getId());
                 
@@ -601,6 +653,23 @@ public class ConsoleUI {
         }
     }
 
+    private void changeDueDate() {
+        System.out.println("\n=== CHANGE DUE DATE ===");
+        
+        String transactionId = getStringInput("Enter transaction ID: ");
+        Transaction transaction = libraryManager.findTransactionById(transactionId);
+        
+        if (transaction == null || transaction.isReturned()) {
+            System.out.println("No active borrow found with ID: " + transactionId);
+            return;
+        }
+        
+        String dueDate = getStringInput("Enter new due date (yyyy-MM-dd): ");
+        if (libraryManager.changeDueDate(transactionId, dueDate)) {
+            System.out.println("Due date updated successfully.");
+        }
+    }
+
     // RESERVATION MANAGEMENT MENU
     private void reservationManagementMenu() {
         boolean backToMain = false;
@@ -695,7 +764,7 @@ public class ConsoleUI {
         
         if (reservation != null) {
             System.out.println("Book reserved successfully. Reservation ID: " + reservation.getId());
-            int queuePosition = libraryManager.getQueuePosition(bookId, patronId);
+            int queuePosition = libraryManager.getQueuePosition(reservation);
             System.out.println("Queue position: " + queuePosition);
         } else {
             System.out.println("Failed to reserve book.");
@@ -758,11 +827,11 @@ public class ConsoleUI {
         } else {
             System.out.println("Reservation queue for \"" + book.getTitle() + "\":");
             
-            for (int i = 0; i < reservations.size(); i++) {
-                Reservation reservation = reservations.get(i);
-                Patron patron = libraryManager.findPatronById(reservation.getPatronId());
+            int position = 1;
+            for (Reservation reservation : reservations) {
+                Patron patron = libraryManager.findPatronByKey(reservation.getPatronKey());
                 
-                System.out.println((i + 1) + ". " + patron.getName() + 
+                System.out.println((position++) + ". " + patron.getName() + 
                         " (Reserved on: " + reservation.getReservationDate() + ")");
             }
         }
@@ -778,6 +847,9 @@ public class ConsoleUI {
             System.out.println("2. Search Books by Author");
             System.out.println("3. Search Books by Keyword");
             System.out.println("4. Search Patrons by Name");
+            System.out.println("5. Autocomplete Title or Author");
+            System.out.println("6. Fuzzy Search (typo tolerant)");
+            System.out.println("7. Filter Books by Genre, Year and Availability");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
@@ -795,6 +867,15 @@ public class ConsoleUI {
                 case 4:
                     searchPatronsByName();
                     break;
+                case 5:
+                    autocompleteBooks();
+                    break;
+                case 6:
+                    fuzzySearch();
+                    break;
+                case 7:
+                    filterBooks();
+                    break;
                 case 0:
                     backToMain = true;
                     break;
@@ -809,13 +890,13 @@ public class ConsoleUI {
         
         String title = getStringInput("Enter title to search: ");
         
-        LinkedList<Book> results = libraryManager.findBooksByTitle(title);
+        LinkedList<Book> results = libraryManager.streamBooksByTitle(title)
+                .limit(RESULT_LIMIT + 1).collect(LinkedList.collector());
         
         if (results.isEmpty()) {
             System.out.println("No books found with title containing: " + title);
         } else {
-            System.out.println("Found " + results.size() + " books:");
-            displayBookList(results);
+            displayBookMatches(results);
         }
     }
 
@@ -824,13 +905,13 @@ public class ConsoleUI {
         
         String author = getStringInput("Enter author to search: ");
         
-        LinkedList<Book> results = libraryManager.findBooksByAuthor(author);
+        LinkedList<Book> results = libraryManager.streamBooksByAuthor(author)
+                .limit(RESULT_LIMIT + 1).collect(LinkedList.collector());
         
         if (results.isEmpty()) {
             System.out.println("No books found with author containing: " + author);
         } else {
-            System.out.println("Found " + results.size() + " books:");
-            displayBookList(results);
+            displayBookMatches(results);
         }
     }
 
@@ -839,13 +920,13 @@ public class ConsoleUI {
         
         String keyword = getStringInput("Enter keyword to search: ");
         
-        LinkedList<Book> results = libraryManager.searchBooksByKeyword(keyword);
+        LinkedList<Book> results = libraryManager.streamBooksByKeyword(keyword)
+                .limit(RESULT_LIMIT + 1).collect(LinkedList.collector());
         
         if (results.isEmpty()) {
             System.out.println("No books found with keyword: " + keyword);
         } else {
-            System.out.println("Found " + results.size() + " books:");
-            displayBookList(results);
+            displayBookMatches(results);
         }
     }
 
@@ -854,23 +935,162 @@ public class ConsoleUI {
         
         String name = getStringInput("Enter name to search: ");
         
-        LinkedList<Patron> results = libraryManager.findPatronsByName(name);
+        LinkedList<Patron> results = libraryManager.streamPatronsByName(name)
+                .limit(RESULT_LIMIT + 1).collect(LinkedList.collector());
         
         if (results.isEmpty()) {
             System.out.println("No patrons found with name containing: " + name);
         } else {
-            System.out.println("Found " + results.size() + " patrons:");
-            displayPatronList(results);
+            displayPatronMatches(results);
+        }
+    }
+
+    private void autocompleteBooks() {
+        System.out.println("\n=== AUTOCOMPLETE TITLE OR AUTHOR ===");
+        
+        String prefix = getStringInput("Enter the start of a title or author word: ");
+        
+        LinkedList<String> titleWords = libraryManager.suggestTitleWords(prefix, SUGGESTION_LIMIT);
+        LinkedList<String> authorWords = libraryManager.suggestAuthorWords(prefix, SUGGESTION_LIMIT);
+        
+        if (titleWords.isEmpty() && authorWords.isEmpty()) {
+            System.out.println("No titles or authors start with: " + prefix);
+            return;
+        }
+        
+        if (!titleWords.isEmpty()) {
+            System.out.println("Title suggestions: " + String.join(", ", titleWords));
+            displayBookList(libraryManager.findBooksByTitlePrefix(prefix));
+        }
+        if (!authorWords.isEmpty()) {
+            System.out.println("\nAuthor suggestions: " + String.join(", ", authorWords));
+            displayBookList(libraryManager.findBooksByAuthorPrefix(prefix));
+        }
+    }
+
+    private void fuzzySearch() {
+        System.out.println("\n=== FUZZY SEARCH ===");
+        
+        String query = getStringInput("Enter search text: ");
+        int maxDistance = getIntInput("Enter maximum typos per word (1-" + MAX_FUZZY_DISTANCE + "): ");
+        if (maxDistance < 1 || maxDistance > MAX_FUZZY_DISTANCE) {
+            System.out.println("Please enter a number between 1 and " + MAX_FUZZY_DISTANCE + ".");
+            return;
+        }
+        
+        LinkedList<Book> books = libraryManager.fuzzySearchBooks(query, maxDistance);
+        LinkedList<Patron> patrons = libraryManager.fuzzySearchPatrons(query, maxDistance);
+        
+        if (books.isEmpty() && patrons.isEmpty()) {
+            System.out.println("No books or patrons found close to: " + query);
+            return;
+        }
+        
+        if (!books.isEmpty()) {
+            System.out.println("Found " + books.size() + " books:");
+            displayBookList(books);
+        }
+        if (!patrons.isEmpty()) {
+            System.out.println("\nFound " + patrons.size() + " patrons:");
+            displayPatronList(patrons);
+        }
+    }
+
+    private void filterBooks() {
+        System.out.println("\n=== FILTER BOOKS ===");
+        
+        TextMatcher genre = new TextMatcher(getStringInput("Enter genre (leave blank for any): "));
+        int fromYear = getIntInput("Published from year (0 for any): ");
+        int toYear = getIntInput("Published up to year (0 for any): ");
+        boolean availableOnly = getStringInput("Available books only? (y/n): ").equalsIgnoreCase("y");
+        
+        // No index covers these combinations, so the catalog is scanned
+        Predicate<Book> filter = book -> {
+            if (!genre.isEmpty() && !genre.matches(book.getGenreKey())) {
+                return false;
+            }
+            if (availableOnly && !book.isAvailable()) {
+                return false;
+            }
+            if (fromYear == 0 && toYear == 0) {
+                return true;
+            }
+            if (book.getPublicationDate() == null) {
+                return false;
+            }
+            int year = book.getPublicationDate().getYear();
+            return (fromYear == 0 || year >= fromYear) && (toYear == 0 || year <= toYear);
+        };
+        
+        LinkedList<Book> results = libraryManager.findBooksMatching(filter);
+        if (results.isEmpty()) {
+            System.out.println("No books match the filter.");
+        } else {
+            System.out.println("Found " + results.size() + " books:");
+            Book[] matches = results.stream().toArray(Book[]::new);
+            displayBookPages(matches.length, arrayPages(matches));
         }
     }
 
     // HELPER METHODS FOR DISPLAYING ENTITIES
-    private void displayBookList(LinkedList<Book> books) {
+    private interface PageSource<T> {
+        LinkedList<T> page(int offset, int limit);
+    }
+
+    private static PageSource<Book> arrayPages(Book[] books) {
+        return (offset, limit) -> {
+            LinkedList<Book> page = new LinkedList<>();
+            for (int i = offset; i < Math.min(offset + limit, books.length); i++) {
+                page.add(books[i]);
+            }
+            return page;
+        };
+    }
+
+    // Shows PAGE_SIZE books at a time, fetching only the page on screen
+    private void displayBookPages(int total, PageSource<Book> source) {
+        int pages = (total + PAGE_SIZE - 1) / PAGE_SIZE;
+        int page = 0;
+        while (true) {
+            displayBookList(source.page(page * PAGE_SIZE, PAGE_SIZE));
+            if (pages <= 1) {
+                return;
+            }
+            String choice = getStringInput("Page " + (page + 1) + " of " + pages + " - (n)ext, (p)revious, (q)uit: ");
+            if (choice.equalsIgnoreCase("n") && page + 1 < pages) {
+                page++;
+            } else if (choice.equalsIgnoreCase("p") && page > 0) {
+                page--;
+            } else if (choice.equalsIgnoreCase("q") || choice.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    // Search results are fetched with one element too many, which only signals that more exist
+    private void displayBookMatches(LinkedList<Book> matches) {
+        if (matches.size() > RESULT_LIMIT) {
+            System.out.println("Showing the first " + RESULT_LIMIT + " matches:");
+        } else {
+            System.out.println("Found " + matches.size() + " books:");
+        }
+        displayBookList(matches.stream().limit(RESULT_LIMIT)::iterator);
+    }
+
+    private void displayPatronMatches(LinkedList<Patron> matches) {
+        if (matches.size() > RESULT_LIMIT) {
+            System.out.println("Showing the first " + RESULT_LIMIT + " matches:");
+        } else {
+            System.out.println("Found " + matches.size() + " patrons:");
+        }
+        displayPatronList(matches.stream().limit(RESULT_LIMIT)::iterator);
+    }
+
+    private void displayBookList(Iterable<Book> books) {
         System.out.println("\nID\t| Title\t| Author\t| Available");
         System.out.println("----------------------------------------------------");
         
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
+        for (Book book : books) {
             System.out.println(book.getId() + "\t| " + 
                     truncateString(book.getTitle(), 20) + "\t| " + 
                     truncateString(book.getAuthor(), 20) + "\t| " + 
@@ -888,12 +1108,11 @@ public class ConsoleUI {
         System.out.println("Available: " + (book.isAvailable() ? "Yes" : "No"));
     }
 
-    private void displayPatronList(LinkedList<Patron> patrons) {
+    private void displayPatronList(Iterable<Patron> patrons) {
         System.out.println("\nID\t| Name\t| Contact Info");
         System.out.println("----------------------------------------------------");
         
-        for (int i = 0; i < patrons.size(); i++) {
-            Patron patron = patrons.get(i);
+        for (Patron patron : patrons) {
             System.out.println(patron.getId() + "\t| " + 
                     truncateString(patron.getName(), 20) + "\t| " + 
                     truncateString(patron.getContactInfo(), 30));
@@ -912,10 +1131,9 @@ public class ConsoleUI {
         System.out.println("\nID\t| Book\t| Patron\t| Borrow Date\t| Due Date\t| Returned");
         System.out.println("--------------------------------------------------------------------------------");
         
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            Book book = libraryManager.findBookById(transaction.getBookId());
-            Patron patron = libraryManager.findPatronById(transaction.getPatronId());
+        for (Transaction transaction : transactions) {
+            Book book = libraryManager.findBookByKey(transaction.getBookKey());
+            Patron patron = libraryManager.findPatronByKey(transaction.getPatronKey());
             
             System.out.println(transaction.getId() + "\t| " + 
                     truncateString(book.getTitle(), 20) + "\t| " + 
@@ -930,10 +1148,9 @@ public class ConsoleUI {
         System.out.println("\nID\t| Book\t| Patron\t| Reservation Date\t| Active");
         System.out.println("--------------------------------------------------------------------------------");
         
-        for (int i = 0; i < reservations.size(); i++) {
-            Reservation reservation = reservations.get(i);
-            Book book = libraryManager.findBookById(reservation.getBookId());
-            Patron patron = libraryManager.findPatronById(reservation.getPatronId());
+        for (Reservation reservation : reservations) {
+            Book book = libraryManager.findBookByKey(reservation.getBookKey());
+            Patron patron = libraryManager.findPatronByKey(reservation.getPatronKey());
             
             System.out.println(reservation.getId() + "\t| " + 
                     truncateString(book.getTitle(), 20) + "\t| " + 
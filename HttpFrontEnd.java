@@ -0,0 +1,755 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import datastructures.HashIndex;
+import datastructures.LinkedList;
+import models.Book;
+import models.Patron;
+import models.Reservation;
+import models.Transaction;
+import services.UpdateResult;
+import utils.JsonReader;
+import utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// JSON over HTTP for branch terminals, served by the JDK's built-in server next to the
+// console. Every request runs on its own virtual thread where the JDK provides them
+// (Java 21+) and on a fixed pool otherwise; LibraryManager is already safe to share.
+//
+//   GET    /books?offset&limit&sort=id|title|author    POST /books
+//   GET    /books/search?title= | author= | keyword= | fuzzy=&distance=  (&limit)
+//   GET    /books/{id}    PUT /books/{id} (with "version")    DELETE /books/{id}
+//   GET    /books/{id}/loans?offset&limit    GET /books/{id}/reservations
+//   GET    /patrons?offset&limit    POST /patrons    GET /patrons/search?name= (&distance)
+//   GET    /patrons/{id}    PUT /patrons/{id} (with "version")    DELETE /patrons/{id}
+//   GET    /patrons/{id}/loans?offset&limit    GET /patrons/{id}/reservations
+//   GET    /loans?status=active|overdue|all    POST /loans {bookId, patronId, days}
+//   GET    /loans/{id}    POST /loans/{id}/return    PUT /loans/{id}/due-date {dueDate}
+//   GET    /reservations    POST /reservations {bookId, patronId}
+//   GET    /reservations/{id}    DELETE /reservations/{id}    POST /reservations/{id}/fulfil
+public class HttpFrontEnd {
+    private static final Logger LOG = Logger.getLogger(HttpFrontEnd.class.getName());
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private static final int MAX_LOAN_DAYS = 30;
+    private static final int MAX_FUZZY_DISTANCE = 3;
+
+    private final LibraryManager libraryManager;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // Thrown by handlers to answer with an error status; the message becomes the body
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class Request {
+        final String method;
+        final String[] path;
+        final HashIndex<String, String> query;
+        final HttpExchange exchange;
+
+        Request(HttpExchange exchange) {
+            this.method = exchange.getRequestMethod();
+            this.path = segments(exchange.getRequestURI().getRawPath());
+            this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+            this.exchange = exchange;
+        }
+    }
+
+    public HttpFrontEnd(LibraryManager libraryManager) {
+        this.libraryManager = libraryManager;
+    }
+
+    public void start(int port) throws IOException {
+        // Headers and body go out as separate writes; without TCP_NODELAY a reused
+        // connection waits on the client's delayed ACK (~40ms) for every response.
+        // The server reads this once, when the first one is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Virtual threads are looked up reflectively so the project still builds on Java 17
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            Request request = new Request(exchange);
+            JsonWriter json = new JsonWriter();
+            status = route(request, json);
+            body = json.toString();
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            // The client only sees a generic message, so keep the cause for whoever runs the server
+            LOG.log(Level.SEVERE, exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed", e);
+            status = 500;
+            body = error("Internal error");
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Writes the response into json and returns the status code
+    private int route(Request request, JsonWriter json) throws IOException {
+        String[] path = request.path;
+        if (path.length == 0) {
+            throw new HttpError(404, "Not found");
+        }
+        switch (path[0]) {
+            case "books":
+                return routeBooks(request, json);
+            case "patrons":
+                return routePatrons(request, json);
+            case "loans":
+                return routeLoans(request, json);
+            case "reservations":
+                return routeReservations(request, json);
+            default:
+                throw new HttpError(404, "Not found");
+        }
+    }
+
+    // BOOKS
+    private int routeBooks(Request request, JsonWriter json) throws IOException {
+        String[] path = request.path;
+        if (path.length == 1) {
+            if (isMethod(request, "GET")) {
+                return listBooks(request, json);
+            }
+            requireMethod(request, "POST");
+            return addBook(request, json);
+        }
+        if (path.length == 2 && path[1].equals("search")) {
+            requireMethod(request, "GET");
+            return searchBooks(request, json);
+        }
+
+        String id = path[1];
+        if (path.length == 2) {
+            switch (request.method) {
+                case "GET":
+                    writeBook(json, requireBook(id));
+                    return 200;
+                case "PUT":
+                    return updateBook(request, id, json);
+                case "DELETE":
+                    if (!libraryManager.removeBook(id)) {
+                        throw new HttpError(404, "Book not found: " + id);
+                    }
+                    json.beginObject().field("removed", id).endObject();
+                    return 200;
+                default:
+                    throw methodNotAllowed();
+            }
+        }
+        if (path.length == 3 && path[2].equals("loans")) {
+            requireMethod(request, "GET");
+            requireBook(id);
+            writeTransactions(json, libraryManager.getTransactionsByBookId(id, offset(request), limit(request)));
+            return 200;
+        }
+        if (path.length == 3 && path[2].equals("reservations")) {
+            requireMethod(request, "GET");
+            requireBook(id);
+            writeReservations(json, libraryManager.getReservationsByBookId(id));
+            return 200;
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    private int listBooks(Request request, JsonWriter json) {
+        int offset = offset(request);
+        int limit = limit(request);
+        String sort = request.query.get("sort");
+        LinkedList<Book> page;
+        if (sort == null || sort.equals("id")) {
+            page = libraryManager.getBooksPage(offset, limit);
+        } else if (sort.equals("title")) {
+            page = libraryManager.getBooksSortedByTitle(offset, limit);
+        } else if (sort.equals("author")) {
+            page = libraryManager.getBooksSortedByAuthor(offset, limit);
+        } else {
+            throw new HttpError(400, "sort must be id, title or author");
+        }
+
+        json.beginObject().field("total", libraryManager.getBookCount())
+                .field("offset", offset).name("books").beginArray();
+        for (Book book : page) {
+            writeBook(json, book);
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private int addBook(Request request, JsonWriter json) throws IOException {
+        HashIndex<String, String> body = readBody(request);
+        Book book = libraryManager.addBook(required(body, "title"), required(body, "author"),
+                required(body, "isbn"), date(required(body, "publicationDate")), required(body, "genre"));
+        writeBook(json, book);
+        return 201;
+    }
+
+    private int updateBook(Request request, String id, JsonWriter json) throws IOException {
+        HashIndex<String, String> body = readBody(request);
+        long version = longValue(required(body, "version"), "version");
+        String publicationDate = body.get("publicationDate");
+        if (publicationDate != null && !publicationDate.isEmpty()) {
+            date(publicationDate);
+        }
+        UpdateResult result = libraryManager.updateBook(id, version, body.get("title"), body.get("author"),
+                body.get("isbn"), publicationDate, body.get("genre"));
+        checkUpdate(result, "Book", id);
+        writeBook(json, requireBook(id));
+        return 200;
+    }
+
+    private int searchBooks(Request request, JsonWriter json) {
+        int limit = limit(request);
+        String title = request.query.get("title");
+        String author = request.query.get("author");
+        String keyword = request.query.get("keyword");
+        String fuzzy = request.query.get("fuzzy");
+
+        json.beginObject().name("books").beginArray();
+        if (fuzzy != null) {
+            int count = 0;
+            for (Book book : libraryManager.fuzzySearchBooks(fuzzy, distance(request))) {
+                if (count++ == limit) {
+                    break;
+                }
+                writeBook(json, book);
+            }
+        } else {
+            Stream<Book> matches;
+            if (title != null) {
+                matches = libraryManager.streamBooksByTitle(title);
+            } else if (author != null) {
+                matches = libraryManager.streamBooksByAuthor(author);
+            } else if (keyword != null) {
+                matches = libraryManager.streamBooksByKeyword(keyword);
+            } else {
+                throw new HttpError(400, "Give one of title, author, keyword or fuzzy");
+            }
+            // The streams are lazy, so only the requested matches are looked up
+            Iterator<Book> iterator = matches.limit(limit).iterator();
+            while (iterator.hasNext()) {
+                writeBook(json, iterator.next());
+            }
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private Book requireBook(String id) {
+        Book book = libraryManager.findBookById(id);
+        if (book == null) {
+            throw new HttpError(404, "Book not found: " + id);
+        }
+        return book;
+    }
+
+    // PATRONS
+    private int routePatrons(Request request, JsonWriter json) throws IOException {
+        String[] path = request.path;
+        if (path.length == 1) {
+            if (isMethod(request, "GET")) {
+                return listPatrons(request, json);
+            }
+            requireMethod(request, "POST");
+            HashIndex<String, String> body = readBody(request);
+            Patron patron = libraryManager.addPatron(required(body, "name"), required(body, "contactInfo"),
+                    required(body, "address"), required(body, "membershipDate"));
+            writePatron(json, patron);
+            return 201;
+        }
+        if (path.length == 2 && path[1].equals("search")) {
+            requireMethod(request, "GET");
+            return searchPatrons(request, json);
+        }
+
+        String id = path[1];
+        if (path.length == 2) {
+            switch (request.method) {
+                case "GET":
+                    writePatron(json, requirePatron(id));
+                    return 200;
+                case "PUT":
+                    HashIndex<String, String> body = readBody(request);
+                    long version = longValue(required(body, "version"), "version");
+                    UpdateResult result = libraryManager.updatePatron(id, version, body.get("name"),
+                            body.get("contactInfo"), body.get("address"), body.get("membershipDate"));
+                    checkUpdate(result, "Patron", id);
+                    writePatron(json, requirePatron(id));
+                    return 200;
+                case "DELETE":
+                    if (!libraryManager.removePatron(id)) {
+                        throw new HttpError(404, "Patron not found: " + id);
+                    }
+                    json.beginObject().field("removed", id).endObject();
+                    return 200;
+                default:
+                    throw methodNotAllowed();
+            }
+        }
+        if (path.length == 3 && path[2].equals("loans")) {
+            requireMethod(request, "GET");
+            requirePatron(id);
+            writeTransactions(json, libraryManager.getTransactionsByPatronId(id, offset(request), limit(request)));
+            return 200;
+        }
+        if (path.length == 3 && path[2].equals("reservations")) {
+            requireMethod(request, "GET");
+            requirePatron(id);
+            writeReservations(json, libraryManager.getReservationsByPatronId(id));
+            return 200;
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    private int listPatrons(Request request, JsonWriter json) {
+        int offset = offset(request);
+        int limit = limit(request);
+        json.beginObject().field("total", libraryManager.getPatronCount())
+                .field("offset", offset).name("patrons").beginArray();
+        for (Patron patron : libraryManager.getPatronsPage(offset, limit)) {
+            writePatron(json, patron);
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private int searchPatrons(Request request, JsonWriter json) {
+        String name = request.query.get("name");
+        if (name == null) {
+            throw new HttpError(400, "Give a name to search for");
+        }
+        int limit = limit(request);
+        json.beginObject().name("patrons").beginArray();
+        if (request.query.get("distance") != null) {
+            int count = 0;
+            for (Patron patron : libraryManager.fuzzySearchPatrons(name, distance(request))) {
+                if (count++ == limit) {
+                    break;
+                }
+                writePatron(json, patron);
+            }
+        } else {
+            Iterator<Patron> matches = libraryManager.streamPatronsByName(name).limit(limit).iterator();
+            while (matches.hasNext()) {
+                writePatron(json, matches.next());
+            }
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private Patron requirePatron(String id) {
+        Patron patron = libraryManager.findPatronById(id);
+        if (patron == null) {
+            throw new HttpError(404, "Patron not found: " + id);
+        }
+        return patron;
+    }
+
+    // LOANS
+    private int routeLoans(Request request, JsonWriter json) throws IOException {
+        String[] path = request.path;
+        if (path.length == 1) {
+            if (isMethod(request, "GET")) {
+                String status = request.query.get("status");
+                if (status == null || status.equals("active")) {
+                    writeTransactions(json, libraryManager.getActiveTransactions());
+                } else if (status.equals("overdue")) {
+                    writeTransactions(json, libraryManager.getOverdueTransactions());
+                } else if (status.equals("all")) {
+                    writeTransactions(json, libraryManager.getAllTransactions());
+                } else {
+                    throw new HttpError(400, "status must be active, overdue or all");
+                }
+                return 200;
+            }
+            requireMethod(request, "POST");
+            return borrow(request, json);
+        }
+
+        String id = path[1];
+        if (path.length == 2) {
+            requireMethod(request, "GET");
+            writeTransaction(json, requireTransaction(id));
+            return 200;
+        }
+        if (path.length == 3 && path[2].equals("return")) {
+            requireMethod(request, "POST");
+            requireTransaction(id);
+            if (!libraryManager.returnBook(id)) {
+                throw new HttpError(409, "Already returned: " + id);
+            }
+            writeTransaction(json, libraryManager.findTransactionById(id));
+            return 200;
+        }
+        if (path.length == 3 && path[2].equals("due-date")) {
+            requireMethod(request, "PUT");
+            HashIndex<String, String> body = readBody(request);
+            String dueDate = required(body, "dueDate");
+            date(dueDate);
+            requireTransaction(id);
+            if (!libraryManager.changeDueDate(id, dueDate)) {
+                throw new HttpError(409, "Not an open loan: " + id);
+            }
+            writeTransaction(json, libraryManager.findTransactionById(id));
+            return 200;
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    private int borrow(Request request, JsonWriter json) throws IOException {
+        HashIndex<String, String> body = readBody(request);
+        String bookId = required(body, "bookId");
+        String patronId = required(body, "patronId");
+        String daysValue = body.get("days");
+        int days = daysValue == null ? DEFAULT_LOAN_DAYS : (int) longValue(daysValue, "days");
+        if (days < 1 || days > MAX_LOAN_DAYS) {
+            throw new HttpError(400, "days must be between 1 and " + MAX_LOAN_DAYS);
+        }
+        requireBook(bookId);
+        requirePatron(patronId);
+
+        Transaction transaction = libraryManager.borrowBook(bookId, patronId, days);
+        if (transaction == null) {
+            throw new HttpError(409, "Book is not available: " + bookId);
+        }
+        writeTransaction(json, transaction);
+        return 201;
+    }
+
+    private Transaction requireTransaction(String id) {
+        Transaction transaction = libraryManager.findTransactionById(id);
+        if (transaction == null) {
+            throw new HttpError(404, "Loan not found: " + id);
+        }
+        return transaction;
+    }
+
+    // RESERVATIONS
+    private int routeReservations(Request request, JsonWriter json) throws IOException {
+        String[] path = request.path;
+        if (path.length == 1) {
+            if (isMethod(request, "GET")) {
+                writeReservations(json, libraryManager.getActiveReservations());
+                return 200;
+            }
+            requireMethod(request, "POST");
+            HashIndex<String, String> body = readBody(request);
+            String bookId = required(body, "bookId");
+            String patronId = required(body, "patronId");
+            requireBook(bookId);
+            requirePatron(patronId);
+            // Reserving again returns the patron's existing reservation, which is not a new resource
+            Reservation existing = libraryManager.findActiveReservation(bookId, patronId);
+            Reservation reservation = libraryManager.reserveBook(bookId, patronId);
+            if (reservation == null) {
+                throw new HttpError(404, "Book or patron no longer exists");
+            }
+            writeReservation(json, reservation);
+            return reservation == existing ? 200 : 201;
+        }
+
+        String id = path[1];
+        if (path.length == 2) {
+            switch (request.method) {
+                case "GET":
+                    writeReservation(json, requireReservation(id));
+                    return 200;
+                case "DELETE":
+                    requireReservation(id);
+                    if (!libraryManager.cancelReservation(id)) {
+                        throw new HttpError(409, "Reservation is no longer active: " + id);
+                    }
+                    writeReservation(json, requireReservation(id));
+                    return 200;
+                default:
+                    throw methodNotAllowed();
+            }
+        }
+        if (path.length == 3 && path[2].equals("fulfil")) {
+            requireMethod(request, "POST");
+            requireReservation(id);
+            if (!libraryManager.fulfillReservation(id)) {
+                throw new HttpError(409, "Reservation is not active or the book is not available: " + id);
+            }
+            writeReservation(json, requireReservation(id));
+            return 200;
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    private Reservation requireReservation(String id) {
+        Reservation reservation = libraryManager.findReservationById(id);
+        if (reservation == null) {
+            throw new HttpError(404, "Reservation not found: " + id);
+        }
+        return reservation;
+    }
+
+    // JSON OUTPUT
+    private static void writeBook(JsonWriter json, Book book) {
+        // One details snapshot, so the fields all belong to the same version
+        Book.Details details = book.getDetails();
+        json.beginObject()
+                .field("id", book.getId())
+                .field("title", details.getTitle())
+                .field("author", details.getAuthor())
+                .field("isbn", details.getIsbn())
+                .field("publicationDate", details.getPublicationDate() == null ? null : details.getPublicationDate().toString())
+                .field("genre", details.getGenre())
+                .field("available", book.isAvailable())
+                .field("version", details.getVersion())
+                .endObject();
+    }
+
+    private static void writePatron(JsonWriter json, Patron patron) {
+        Patron.Details details = patron.getDetails();
+        json.beginObject()
+                .field("id", patron.getId())
+                .field("name", details.getName())
+                .field("contactInfo", details.getContactInfo())
+                .field("address", details.getAddress())
+                .field("membershipDate", details.getMembershipDate())
+                .field("version", details.getVersion())
+                .endObject();
+    }
+
+    private static void writeTransaction(JsonWriter json, Transaction transaction) {
+        json.beginObject()
+                .field("id", transaction.getId())
+                .field("bookId", transaction.getBookId())
+                .field("patronId", transaction.getPatronId())
+                .field("borrowDate", transaction.getBorrowDate().toString())
+                .field("dueDate", transaction.getDueDate().toString())
+                .field("returnDate", transaction.isReturned() ? transaction.getReturnDate().toString() : null)
+                .endObject();
+    }
+
+    private static void writeTransactions(JsonWriter json, LinkedList<Transaction> transactions) {
+        json.beginObject().name("loans").beginArray();
+        for (Transaction transaction : transactions) {
+            writeTransaction(json, transaction);
+        }
+        json.endArray().endObject();
+    }
+
+    private void writeReservation(JsonWriter json, Reservation reservation) {
+        json.beginObject()
+                .field("id", reservation.getId())
+                .field("bookId", reservation.getBookId())
+                .field("patronId", reservation.getPatronId())
+                .field("reservationDate", reservation.getReservationDate().toString())
+                .field("active", reservation.isActive());
+        if (reservation.isActive()) {
+            json.field("queuePosition", libraryManager.getQueuePosition(reservation));
+        }
+        json.endObject();
+    }
+
+    private void writeReservations(JsonWriter json, LinkedList<Reservation> reservations) {
+        json.beginObject().name("reservations").beginArray();
+        for (Reservation reservation : reservations) {
+            writeReservation(json, reservation);
+        }
+        json.endArray().endObject();
+    }
+
+    private static String error(String message) {
+        return new JsonWriter().beginObject().field("error", message).endObject().toString();
+    }
+
+    // REQUEST HELPERS
+    private static boolean isMethod(Request request, String method) {
+        return request.method.equals(method);
+    }
+
+    private static void requireMethod(Request request, String method) {
+        if (!isMethod(request, method)) {
+            throw methodNotAllowed();
+        }
+    }
+
+    private static HttpError methodNotAllowed() {
+        return new HttpError(405, "Method not allowed");
+    }
+
+    private static HashIndex<String, String> readBody(Request request) throws IOException {
+        byte[] bytes = request.exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body too large");
+        }
+        return JsonReader.parseObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static String required(HashIndex<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new HttpError(400, "Missing " + name);
+        }
+        return value;
+    }
+
+    private static long longValue(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be a whole number");
+        }
+    }
+
+    // Checked here so LibraryManager never reaches its console message for bad dates
+    private static String date(String value) {
+        try {
+            LocalDate.parse(value);
+            return value;
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, "Dates must be yyyy-MM-dd: " + value);
+        }
+    }
+
+    private static void checkUpdate(UpdateResult result, String kind, String id) {
+        if (result == UpdateResult.NOT_FOUND) {
+            throw new HttpError(404, kind + " not found: " + id);
+        }
+        if (result == UpdateResult.CONFLICT) {
+            throw new HttpError(409, kind + " was changed by someone else; fetch it again and retry");
+        }
+        if (result == UpdateResult.INVALID) {
+            throw new HttpError(400, "Invalid " + kind.toLowerCase() + " details");
+        }
+    }
+
+    private static int offset(Request request) {
+        int offset = intParameter(request, "offset", 0);
+        if (offset < 0) {
+            throw new HttpError(400, "offset cannot be negative");
+        }
+        return offset;
+    }
+
+    private static int limit(Request request) {
+        int limit = intParameter(request, "limit", DEFAULT_PAGE_SIZE);
+        if (limit < 0 || limit > MAX_PAGE_SIZE) {
+            throw new HttpError(400, "limit must be between 0 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private static int distance(Request request) {
+        int distance = intParameter(request, "distance", 1);
+        if (distance < 1 || distance > MAX_FUZZY_DISTANCE) {
+            throw new HttpError(400, "distance must be between 1 and " + MAX_FUZZY_DISTANCE);
+        }
+        return distance;
+    }
+
+    private static int intParameter(Request request, String name, int defaultValue) {
+        String value = request.query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be a whole number");
+        }
+    }
+
+    private static String[] segments(String rawPath) {
+        LinkedList<String> segments = new LinkedList<>();
+        for (String segment : rawPath.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        String[] result = new String[segments.size()];
+        int i = 0;
+        for (String segment : segments) {
+            result[i++] = segment;
+        }
+        return result;
+    }
+
+    private static HashIndex<String, String> parseQuery(String rawQuery) {
+        HashIndex<String, String> query = new HashIndex<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
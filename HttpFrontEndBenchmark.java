@@ -0,0 +1,118 @@
+import models.Book;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Starts HttpFrontEnd on a free local port and drives it from 1, 4 and 16 client threads,
+// each with its own keep-alive connection, mixing book lookups, title searches and patron
+// pages. Prints the throughput and the median, 99th percentile and worst latency of each
+// run; any response other than 200 stops the benchmark.
+// Run from the project root:
+//   java HttpFrontEndBenchmark [requests per client count] [books]
+public class HttpFrontEndBenchmark {
+    private static final int DEFAULT_REQUESTS = 20_000;
+    private static final int DEFAULT_BOOKS = 10_000;
+    private static final int PATRONS = 1_000;
+    private static final int[] CLIENTS = {1, 4, 16};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REQUESTS;
+        int bookCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BOOKS;
+        LibraryManager manager = new LibraryManager();
+        String[] bookIds = new String[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Book book = manager.addBook("Title " + i, "Author " + (i % 500), "isbn-" + i, "2001-01-01", "fiction");
+            bookIds[i] = book.getId();
+        }
+        for (int i = 0; i < PATRONS; i++) {
+            manager.addPatron("Patron " + i, "patron" + i + "@example.org", "Street " + i, "2020-01-01");
+        }
+
+        HttpFrontEnd frontEnd = new HttpFrontEnd(manager);
+        frontEnd.start(0);
+        String base = "http://localhost:" + frontEnd.getPort();
+        try {
+            System.out.printf("%,d books, %,d patrons, %d available processors%n",
+                    bookCount, PATRONS, Runtime.getRuntime().availableProcessors());
+            for (int round = 1; round <= ROUNDS; round++) {
+                System.out.printf("Round %d: %,d requests per client count%n", round, requests);
+                for (int clients : CLIENTS) {
+                    run(base, bookIds, requests, clients);
+                }
+            }
+        } finally {
+            frontEnd.stop();
+        }
+    }
+
+    private static void run(String base, String[] bookIds, int requests, int clients) throws InterruptedException {
+        int share = requests / clients;
+        long[][] latencies = new long[clients][share];
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            long[] mine = latencies[c];
+            threads[c] = new Thread(() -> {
+                // One client per thread, so each keeps its own connection to the server
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5)).build();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < share && failure.get() == null; i++) {
+                        URI uri = URI.create(base + path(random, bookIds));
+                        long begin = System.nanoTime();
+                        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        mine[i] = System.nanoTime() - begin;
+                        if (response.statusCode() != 200) {
+                            failure.compareAndSet(null, uri + " answered " + response.statusCode());
+                        }
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e.toString());
+                }
+            });
+            threads[c].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        long[] all = new long[share * clients];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * share, share);
+        }
+        Arrays.sort(all);
+        System.out.printf("  %2d clients: %,8.0f requests/s, p50 %6.2f ms, p99 %6.2f ms, max %7.2f ms%n",
+                clients, all.length / (nanos / 1e9), all[all.length / 2] / 1e6,
+                all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+    }
+
+    // Mostly single-book reads, as a terminal does, with some searches and list pages
+    private static String path(ThreadLocalRandom random, String[] bookIds) {
+        int pick = random.nextInt(10);
+        if (pick < 6) {
+            return "/books/" + bookIds[random.nextInt(bookIds.length)];
+        }
+        if (pick < 8) {
+            return "/books/search?title=title+" + random.nextInt(bookIds.length) + "&limit=20";
+        }
+        return "/patrons?offset=" + random.nextInt(PATRONS) + "&limit=20";
+    }
+}
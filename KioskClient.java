@@ -0,0 +1,293 @@
+import datastructures.LinkedList;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDate;
+
+// Kiosk side of the protocol in KioskProtocol. Requests can be pipelined: queue several
+// with the send methods, then receive their responses, which come back in request order
+// (receive flushes whatever is queued). The plain lookupBook, borrow, returnBook and search
+// methods send one request and wait for its answer. Not thread-safe; use one client per thread.
+// Sends block once the server stops reading because its answers are not being received,
+// so keep the number of requests in flight to a few hundred.
+public class KioskClient implements Closeable {
+    private final SocketChannel channel;
+    private final ByteBuffer out; // write mode
+    private final ByteBuffer in; // write mode; a frame being received starts at 0
+    private final byte[] scratch;
+    private int frameStart; // of the request being written
+    private int nextRequestId;
+    private int pending; // requests sent and not yet received
+
+    public static final class BookSummary {
+        private final String id;
+        private final String title;
+        private final String author;
+        private final boolean available;
+
+        BookSummary(String id, String title, String author, boolean available) {
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.available = available;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public String toString() {
+            return id + " " + title + " by " + author + (available ? "" : " (on loan)");
+        }
+    }
+
+    // Only the fields the operation answers with are set; the rest stay null
+    public static final class Response {
+        private final int requestId;
+        private final byte operation;
+        private final byte status;
+        private String message;
+        private BookSummary book;
+        private LinkedList<BookSummary> books;
+        private String transactionId;
+        private LocalDate dueDate;
+
+        Response(int requestId, byte operation, byte status) {
+            this.requestId = requestId;
+            this.operation = operation;
+            this.status = status;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public byte getOperation() {
+            return operation;
+        }
+
+        public byte getStatus() {
+            return status;
+        }
+
+        public boolean isOk() {
+            return status == KioskProtocol.OK;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public BookSummary getBook() {
+            return book;
+        }
+
+        public LinkedList<BookSummary> getBooks() {
+            return books;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public LocalDate getDueDate() {
+            return dueDate;
+        }
+    }
+
+    public KioskClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        out = ByteBuffer.allocateDirect(KioskProtocol.MAX_FRAME_SIZE);
+        in = ByteBuffer.allocateDirect(KioskProtocol.MAX_FRAME_SIZE);
+        scratch = new byte[KioskProtocol.MAX_FRAME_SIZE];
+    }
+
+    // PIPELINED REQUESTS; each returns the request id its response will carry
+    public int sendLookupBook(String bookId) throws IOException {
+        int requestId = begin(KioskProtocol.LOOKUP_BOOK, KioskProtocol.maxEncodedLength(bookId));
+        KioskProtocol.putString(out, bookId);
+        return end(requestId);
+    }
+
+    // days 0 asks for the standard loan period
+    public int sendBorrow(String bookId, String patronId, int days) throws IOException {
+        if (days < 0 || days > 255) {
+            throw new IllegalArgumentException("days must be between 0 and 255");
+        }
+        int requestId = begin(KioskProtocol.BORROW,
+                KioskProtocol.maxEncodedLength(bookId) + KioskProtocol.maxEncodedLength(patronId) + 1);
+        KioskProtocol.putString(out, bookId);
+        KioskProtocol.putString(out, patronId);
+        out.put((byte) days);
+        return end(requestId);
+    }
+
+    public int sendReturn(String transactionId) throws IOException {
+        int requestId = begin(KioskProtocol.RETURN, KioskProtocol.maxEncodedLength(transactionId));
+        KioskProtocol.putString(out, transactionId);
+        return end(requestId);
+    }
+
+    // field is KioskProtocol.BY_TITLE, BY_AUTHOR or BY_KEYWORD
+    public int sendSearch(byte field, String query, int limit) throws IOException {
+        int requestId = begin(KioskProtocol.SEARCH, 1 + KioskProtocol.maxEncodedLength(query) + 2);
+        out.put(field);
+        KioskProtocol.putString(out, query);
+        out.putShort((short) Math.min(limit, 0xFFFF));
+        return end(requestId);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // The response to the oldest request not yet received
+    public Response receive() throws IOException {
+        if (pending == 0) {
+            throw new IllegalStateException("No request is waiting for a response");
+        }
+        flush();
+        fill(4);
+        int length = in.getInt(0);
+        if (length < KioskProtocol.RESPONSE_HEADER_SIZE || length > KioskProtocol.MAX_FRAME_SIZE - 4) {
+            throw new IOException("Malformed response frame");
+        }
+        fill(4 + length);
+
+        in.flip();
+        int limit = in.limit();
+        in.limit(4 + length).position(4);
+        Response response = decode();
+        in.limit(limit).position(4 + length);
+        in.compact();
+        pending--;
+        return response;
+    }
+
+    // ONE REQUEST AT A TIME
+    public Response lookupBook(String bookId) throws IOException {
+        requireIdle();
+        sendLookupBook(bookId);
+        return receive();
+    }
+
+    public Response borrow(String bookId, String patronId, int days) throws IOException {
+        requireIdle();
+        sendBorrow(bookId, patronId, days);
+        return receive();
+    }
+
+    public Response returnBook(String transactionId) throws IOException {
+        requireIdle();
+        sendReturn(transactionId);
+        return receive();
+    }
+
+    public Response search(byte field, String query, int limit) throws IOException {
+        requireIdle();
+        sendSearch(field, query, limit);
+        return receive();
+    }
+
+    public int getPendingCount() {
+        return pending;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void requireIdle() {
+        if (pending > 0) {
+            throw new IllegalStateException(pending + " pipelined responses have not been received");
+        }
+    }
+
+    // Starts a frame whose payload is at most payloadBound bytes, flushing to make room
+    private int begin(byte operation, int payloadBound) throws IOException {
+        int frameBound = 4 + KioskProtocol.REQUEST_HEADER_SIZE + payloadBound;
+        if (frameBound > KioskProtocol.MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Request too large");
+        }
+        if (out.remaining() < frameBound) {
+            flush();
+        }
+        int requestId = nextRequestId++;
+        frameStart = out.position();
+        out.putInt(0).putInt(requestId).put(operation);
+        return requestId;
+    }
+
+    // Fills in the length begin left as 0
+    private int end(int requestId) {
+        out.putInt(frameStart, out.position() - frameStart - 4);
+        pending++;
+        return requestId;
+    }
+
+    private void fill(int bytes) throws IOException {
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+
+    private Response decode() {
+        Response response = new Response(in.getInt(), in.get(), in.get());
+        if (!response.isOk()) {
+            response.message = KioskProtocol.getString(in, scratch);
+            return response;
+        }
+        switch (response.operation) {
+            case KioskProtocol.LOOKUP_BOOK:
+                response.book = readBook();
+                break;
+            case KioskProtocol.BORROW:
+                response.transactionId = KioskProtocol.getString(in, scratch);
+                response.dueDate = LocalDate.ofEpochDay(in.getInt());
+                break;
+            case KioskProtocol.SEARCH:
+                int count = in.getShort() & 0xFFFF;
+                response.books = new LinkedList<>();
+                for (int i = 0; i < count; i++) {
+                    response.books.add(readBook());
+                }
+                break;
+            default:
+                break;
+        }
+        return response;
+    }
+
+    private BookSummary readBook() {
+        String id = KioskProtocol.getString(in, scratch);
+        String title = KioskProtocol.getString(in, scratch);
+        String author = KioskProtocol.getString(in, scratch);
+        return new BookSummary(id, title, author, in.get() != 0);
+    }
+}
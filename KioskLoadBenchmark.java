@@ -0,0 +1,141 @@
+import models.Book;
+import models.Patron;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Starts KioskServer on a free loopback port and drives it from 1, 4 and 16 kiosks at once.
+// Each kiosk pipelines a few lookups and searches behind every borrow, then returns the
+// loan, so the lookups queue up behind borrows that run on the worker pool. Prints the
+// requests per second and the round-trip latency of each batch; responses that come back
+// out of request order, or a borrow and return that do not pair up, stop the benchmark.
+// Run from the project root:
+//   java KioskLoadBenchmark [batches per kiosk count] [books]
+public class KioskLoadBenchmark {
+    private static final int DEFAULT_BATCHES = 5_000;
+    private static final int DEFAULT_BOOKS = 10_000;
+    private static final int PATRONS = 1_000;
+    private static final int LOOKUPS_PER_BATCH = 4;
+    private static final int[] KIOSKS = {1, 4, 16};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BATCHES;
+        int bookCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BOOKS;
+        LibraryManager manager = new LibraryManager();
+        String[] bookIds = new String[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Book book = manager.addBook("Title " + i, "Author " + (i % 500), "isbn-" + i, "2001-01-01", "fiction");
+            bookIds[i] = book.getId();
+        }
+        String[] patronIds = new String[PATRONS];
+        for (int i = 0; i < PATRONS; i++) {
+            Patron patron = manager.addPatron("Patron " + i, "patron" + i + "@example.org", "Street " + i, "2020-01-01");
+            patronIds[i] = patron.getId();
+        }
+
+        KioskServer server = new KioskServer(manager);
+        server.start(0);
+        try {
+            System.out.printf("%,d books, %,d patrons, %d available processors%n",
+                    bookCount, PATRONS, Runtime.getRuntime().availableProcessors());
+            for (int round = 1; round <= ROUNDS; round++) {
+                System.out.printf("Round %d: %,d batches per kiosk count%n", round, batches);
+                for (int kiosks : KIOSKS) {
+                    run(server.getPort(), bookIds, patronIds, batches, kiosks);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(int port, String[] bookIds, String[] patronIds, int batches, int kiosks)
+            throws InterruptedException {
+        int share = batches / kiosks;
+        long[][] latencies = new long[kiosks][share];
+        long[] requests = new long[kiosks];
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[kiosks];
+        for (int k = 0; k < kiosks; k++) {
+            int kiosk = k;
+            threads[k] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try (KioskClient client = new KioskClient("localhost", port)) {
+                    start.await();
+                    for (int i = 0; i < share && failure.get() == null; i++) {
+                        long begin = System.nanoTime();
+                        requests[kiosk] += batch(client, random, bookIds, patronIds);
+                        latencies[kiosk][i] = System.nanoTime() - begin;
+                    }
+                } catch (IOException | InterruptedException | IllegalStateException e) {
+                    failure.compareAndSet(null, e.toString());
+                }
+            });
+            threads[k].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        long total = 0;
+        long[] all = new long[share * kiosks];
+        for (int k = 0; k < kiosks; k++) {
+            total += requests[k];
+            System.arraycopy(latencies[k], 0, all, k * share, share);
+        }
+        Arrays.sort(all);
+        System.out.printf("  %2d kiosks: %,8.0f requests/s, batch p50 %6.2f ms, p99 %6.2f ms, max %7.2f ms%n",
+                kiosks, total / (nanos / 1e9), all[all.length / 2] / 1e6,
+                all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+    }
+
+    // A borrow with lookups and a search pipelined behind it, then the return of the loan.
+    // Returns the number of requests sent.
+    private static int batch(KioskClient client, ThreadLocalRandom random, String[] bookIds, String[] patronIds)
+            throws IOException {
+        int[] sent = new int[LOOKUPS_PER_BATCH + 2];
+        sent[0] = client.sendBorrow(bookIds[random.nextInt(bookIds.length)],
+                patronIds[random.nextInt(patronIds.length)], 0);
+        for (int i = 1; i <= LOOKUPS_PER_BATCH; i++) {
+            sent[i] = client.sendLookupBook(bookIds[random.nextInt(bookIds.length)]);
+        }
+        sent[sent.length - 1] = client.sendSearch(KioskProtocol.BY_TITLE, "title " + random.nextInt(bookIds.length), 10);
+
+        KioskClient.Response loan = null;
+        for (int i = 0; i < sent.length; i++) {
+            KioskClient.Response response = client.receive();
+            if (response.getRequestId() != sent[i]) {
+                throw new IllegalStateException("Expected the answer to request " + sent[i]
+                        + " but got " + response.getRequestId());
+            }
+            if (i == 0) {
+                loan = response;
+            } else if (!response.isOk()) {
+                throw new IllegalStateException("Lookup failed: " + response.getMessage());
+            }
+        }
+        if (!loan.isOk()) {
+            if (loan.getStatus() != KioskProtocol.CONFLICT) {
+                throw new IllegalStateException("Borrow failed: " + loan.getMessage());
+            }
+            // Another kiosk holds the book; nothing to return
+            return sent.length;
+        }
+        KioskClient.Response returned = client.returnBook(loan.getTransactionId());
+        if (!returned.isOk()) {
+            throw new IllegalStateException("Return of " + loan.getTransactionId() + " failed: " + returned.getMessage());
+        }
+        return sent.length + 1;
+    }
+}
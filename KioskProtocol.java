@@ -0,0 +1,86 @@
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Wire format shared by KioskServer and KioskClient. Every message is a frame: a 4-byte
+// length of the rest of the frame, the request id (4 bytes, echoed in the response) and
+// the operation (1 byte). Responses then carry a status byte. Integers are big-endian;
+// strings are an unsigned 2-byte length followed by UTF-8 bytes.
+//
+//   LOOKUP_BOOK  bookId                                  -> book
+//   BORROW       bookId, patronId, days (1 byte, 0 = 14) -> transactionId, due date (epoch day, 4 bytes)
+//   RETURN       transactionId                           -> nothing
+//   SEARCH       field (1 byte), query, limit (2 bytes)  -> count (2 bytes), that many books
+//
+// where a book is id, title, author, available (1 byte). A status other than OK carries
+// a message string in place of the payload.
+public final class KioskProtocol {
+    public static final int MAX_FRAME_SIZE = 16 * 1024; // including the length itself
+    public static final int REQUEST_HEADER_SIZE = 5; // request id and operation
+    public static final int RESPONSE_HEADER_SIZE = 6; // request id, operation and status
+
+    // Operations
+    public static final byte LOOKUP_BOOK = 1;
+    public static final byte BORROW = 2;
+    public static final byte RETURN = 3;
+    public static final byte SEARCH = 4;
+
+    // Statuses
+    public static final byte OK = 0;
+    public static final byte NOT_FOUND = 1;
+    public static final byte CONFLICT = 2;
+    public static final byte BAD_REQUEST = 3;
+    public static final byte ERROR = 4;
+
+    // Search fields
+    public static final byte BY_TITLE = 1;
+    public static final byte BY_AUTHOR = 2;
+    public static final byte BY_KEYWORD = 3;
+
+    private KioskProtocol() {
+    }
+
+    // Throws BufferOverflowException, writing nothing, when the string does not fit
+    static void putString(ByteBuffer buffer, String value) {
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF || buffer.remaining() < 2 + bytes.length) {
+                throw new BufferOverflowException();
+            }
+            buffer.putShort((short) bytes.length).put(bytes);
+            return;
+        }
+        // Most IDs, titles and names are ASCII and are copied without an intermediate array
+        if (length > 0xFFFF || buffer.remaining() < 2 + length) {
+            throw new BufferOverflowException();
+        }
+        buffer.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    // scratch must hold at least MAX_FRAME_SIZE bytes
+    static String getString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Upper bound on the bytes putString writes for the value
+    static int maxEncodedLength(String value) {
+        return 2 + 3 * value.length();
+    }
+}
@@ -0,0 +1,587 @@
+import models.Book;
+import models.Transaction;
+import utils.BufferPool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Serves the self-checkout kiosks over the binary protocol in KioskProtocol. A few event
+// loops, one thread and selector each, own the connections; the first also accepts and
+// deals new connections out round-robin. Lookups and searches run on the loop thread as
+// they are decoded, and a kiosk may pipeline as many as it likes: every complete frame in
+// the input buffer is answered into one output buffer, written with a single call per batch.
+// Borrows and returns wait on the book and patron stripes, so they go to a worker pool
+// instead; the connection holds its later requests until the answer is back, keeping
+// responses in request order, while the loop goes on serving the other kiosks.
+//
+// Connections hold pooled direct buffers only while bytes are in flight. When a kiosk
+// stops reading, the loop stops reading from it too until its output drains.
+public class KioskServer {
+    private static final int MAX_POOLED_BUFFERS = 256; // per event loop
+    private static final int RESPONSE_RESERVE = 512; // free output space needed before running a request
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private static final int MAX_LOAN_DAYS = 30;
+    private static final int WORKER_THREADS = 16;
+
+    private final LibraryManager libraryManager;
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private ExecutorService workers; // borrows and returns
+    private int nextLoop; // only touched by the accepting loop
+    private volatile boolean running;
+
+    public KioskServer(LibraryManager libraryManager) {
+        this.libraryManager = libraryManager;
+    }
+
+    // One event loop per core
+    public void start(int port) throws IOException {
+        start(port, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void start(int port, int loopCount) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+
+        loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(WORKER_THREADS, task -> {
+            Thread thread = new Thread(task, "kiosk-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Let borrows and returns already under way finish; their answers have nowhere to go
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    // The answer to a borrow or return, made on a worker and written out by the event loop
+    private static final class Outcome {
+        final byte status;
+        final String text; // the loan's transaction id when OK, otherwise the error message
+        final int dueDay;
+
+        Outcome(byte status, String text, int dueDay) {
+            this.status = status;
+            this.text = text;
+            this.dueDay = dueDay;
+        }
+
+        static Outcome failed(byte status, String message) {
+            return new Outcome(status, message, 0);
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<SocketChannel> accepted;
+        private final ConcurrentLinkedQueue<Runnable> completed; // worker answers to write out
+        private final BufferPool pool;
+        private final byte[] scratch; // for decoding request strings
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "kiosk-loop-" + index);
+            this.thread.setDaemon(true);
+            this.accepted = new ConcurrentLinkedQueue<>();
+            this.completed = new ConcurrentLinkedQueue<>();
+            this.pool = new BufferPool(KioskProtocol.MAX_FRAME_SIZE, MAX_POOLED_BUFFERS);
+            this.scratch = new byte[KioskProtocol.MAX_FRAME_SIZE];
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    break;
+                }
+                registerAccepted();
+                runCompleted();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.onWritable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            }
+            closeAll();
+        }
+
+        private void accept() {
+            try {
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    EventLoop loop = loops[nextLoop];
+                    nextLoop = (nextLoop + 1) % loops.length;
+                    if (loop == this) {
+                        register(channel);
+                    } else {
+                        loop.accepted.add(channel);
+                        loop.selector.wakeup();
+                    }
+                }
+            } catch (IOException e) {
+                // A failed accept only loses that connection; the kiosk will retry
+            }
+        }
+
+        // Connections handed over by the accepting loop
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                register(channel);
+            }
+        }
+
+        private void runCompleted() {
+            Runnable completion;
+            while ((completion = completed.poll()) != null) {
+                completion.run();
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, channel, key));
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                closeQuietly(channel);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private final class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in; // write mode; null while no partial request is buffered
+        private ByteBuffer out; // write mode; null while no response is waiting
+        private boolean waiting; // a borrow or return is on a worker; later requests wait for it
+        private boolean closed;
+
+        Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void onReadable() throws IOException {
+            if (in == null) {
+                in = loop.pool.acquire();
+            }
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        void onWritable() throws IOException {
+            if (flush()) {
+                // Requests that arrived while the output was backed up are still buffered
+                process();
+            }
+        }
+
+        // Answers every complete request in the input buffer up to the first one handed to a
+        // worker, writes the answers, and reads again only once nothing is held up
+        private void process() throws IOException {
+            boolean blocked = false;
+            if (in != null && !waiting) {
+                blocked = answerBuffered();
+                if (closed) {
+                    return;
+                }
+            }
+            if (blocked || !flush()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(waiting ? 0 : SelectionKey.OP_READ);
+            }
+        }
+
+        // Returns true when the output must drain before more requests can be answered
+        private boolean answerBuffered() throws IOException {
+            in.flip();
+            boolean blocked = false;
+            while (!waiting && in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < KioskProtocol.REQUEST_HEADER_SIZE || length > KioskProtocol.MAX_FRAME_SIZE - 4) {
+                    // The stream cannot be resynchronized after a bad length
+                    close();
+                    return false;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                if (!answer(length)) {
+                    if (!flush()) {
+                        blocked = true;
+                        break;
+                    }
+                }
+            }
+            in.compact();
+            if (in.position() == 0) {
+                loop.pool.release(in);
+                in = null;
+            }
+            return blocked;
+        }
+
+        // Runs the request framed at the input position and appends its response. Returns
+        // false, consuming nothing, when the output buffer must be flushed first.
+        private boolean answer(int length) {
+            if (out == null) {
+                out = loop.pool.acquire();
+            } else if (out.remaining() < RESPONSE_RESERVE) {
+                return false;
+            }
+
+            int frameStart = in.position();
+            int frameEnd = frameStart + 4 + length;
+            int limit = in.limit();
+            in.limit(frameEnd).position(frameStart + 4);
+            int requestId = in.getInt();
+            byte operation = in.get();
+            if (operation == KioskProtocol.BORROW || operation == KioskProtocol.RETURN) {
+                Outcome rejected = handOff(requestId, operation);
+                if (rejected != null) {
+                    putResponse(requestId, operation, rejected);
+                }
+                in.limit(limit).position(frameEnd);
+                return true;
+            }
+
+            int responseStart = out.position();
+            out.putInt(0).putInt(requestId).put(operation);
+            try {
+                dispatch(operation);
+            } catch (BufferOverflowException e) {
+                // Only lookups and searches answer with more than RESPONSE_RESERVE bytes,
+                // and they change nothing, so they are safe to run again after a flush
+                if (responseStart > 0) {
+                    out.position(responseStart);
+                    in.limit(limit).position(frameStart);
+                    return false;
+                }
+                out.position(responseStart + 4 + KioskProtocol.REQUEST_HEADER_SIZE);
+                fail(KioskProtocol.ERROR, "Response too large");
+            }
+            out.putInt(responseStart, out.position() - responseStart - 4);
+            in.limit(limit).position(frameEnd);
+            return true;
+        }
+
+        private void dispatch(byte operation) {
+            int payloadStart = out.position();
+            try {
+                switch (operation) {
+                    case KioskProtocol.LOOKUP_BOOK:
+                        lookupBook();
+                        break;
+                    case KioskProtocol.SEARCH:
+                        search();
+                        break;
+                    default:
+                        fail(KioskProtocol.BAD_REQUEST, "Unknown operation");
+                }
+            } catch (BufferUnderflowException e) {
+                out.position(payloadStart);
+                fail(KioskProtocol.BAD_REQUEST, "Truncated request");
+            } catch (BufferOverflowException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                out.position(payloadStart);
+                fail(KioskProtocol.ERROR, "Internal error");
+            }
+        }
+
+        private void lookupBook() {
+            String bookId = KioskProtocol.getString(in, loop.scratch);
+            Book book = libraryManager.findBookById(bookId);
+            if (book == null) {
+                fail(KioskProtocol.NOT_FOUND, "No such book");
+                return;
+            }
+            out.put(KioskProtocol.OK);
+            putBook(book);
+        }
+
+        // Decodes a borrow or return and queues it on a worker, or returns the answer at once
+        // when the request is malformed. Runs with output space for the answer already free,
+        // and nothing else is appended until the answer is written, so the space stays free.
+        private Outcome handOff(int requestId, byte operation) {
+            Supplier<Outcome> request;
+            try {
+                if (operation == KioskProtocol.BORROW) {
+                    String bookId = KioskProtocol.getString(in, loop.scratch);
+                    String patronId = KioskProtocol.getString(in, loop.scratch);
+                    int days = in.get() & 0xFF;
+                    if (days > MAX_LOAN_DAYS) {
+                        return Outcome.failed(KioskProtocol.BAD_REQUEST, "Loans are at most " + MAX_LOAN_DAYS + " days");
+                    }
+                    int loanDays = days == 0 ? DEFAULT_LOAN_DAYS : days;
+                    request = () -> borrow(bookId, patronId, loanDays);
+                } else {
+                    String transactionId = KioskProtocol.getString(in, loop.scratch);
+                    request = () -> returnBook(transactionId);
+                }
+            } catch (BufferUnderflowException e) {
+                return Outcome.failed(KioskProtocol.BAD_REQUEST, "Truncated request");
+            }
+
+            try {
+                workers.execute(() -> {
+                    Outcome outcome;
+                    try {
+                        outcome = request.get();
+                    } catch (RuntimeException e) {
+                        outcome = Outcome.failed(KioskProtocol.ERROR, "Internal error");
+                    }
+                    Outcome answer = outcome;
+                    loop.completed.add(() -> complete(requestId, operation, answer));
+                    loop.selector.wakeup();
+                });
+            } catch (RejectedExecutionException e) {
+                return Outcome.failed(KioskProtocol.ERROR, "Server is stopping");
+            }
+            waiting = true;
+            return null;
+        }
+
+        // On the loop thread again with a worker's answer; carries on with the held requests
+        private void complete(int requestId, byte operation, Outcome outcome) {
+            waiting = false;
+            if (closed) {
+                return;
+            }
+            putResponse(requestId, operation, outcome);
+            try {
+                process();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void putResponse(int requestId, byte operation, Outcome outcome) {
+            if (out == null) {
+                out = loop.pool.acquire();
+            }
+            int responseStart = out.position();
+            out.putInt(0).putInt(requestId).put(operation);
+            if (outcome.status != KioskProtocol.OK) {
+                fail(outcome.status, outcome.text);
+            } else {
+                out.put(KioskProtocol.OK);
+                if (operation == KioskProtocol.BORROW) {
+                    KioskProtocol.putString(out, outcome.text);
+                    out.putInt(outcome.dueDay);
+                }
+            }
+            out.putInt(responseStart, out.position() - responseStart - 4);
+        }
+
+        // Worker thread: only the library is touched here, never the connection's buffers
+        private Outcome borrow(String bookId, String patronId, int days) {
+            if (libraryManager.findBookById(bookId) == null) {
+                return Outcome.failed(KioskProtocol.NOT_FOUND, "No such book");
+            }
+            if (libraryManager.findPatronById(patronId) == null) {
+                return Outcome.failed(KioskProtocol.NOT_FOUND, "No such patron");
+            }
+            Transaction transaction = libraryManager.borrowBook(bookId, patronId, days);
+            if (transaction == null) {
+                return Outcome.failed(KioskProtocol.CONFLICT, "Book is not available");
+            }
+            return new Outcome(KioskProtocol.OK, transaction.getId(), (int) transaction.getDueDate().toEpochDay());
+        }
+
+        private Outcome returnBook(String transactionId) {
+            if (libraryManager.returnBook(transactionId)) {
+                return new Outcome(KioskProtocol.OK, null, 0);
+            }
+            if (libraryManager.findTransactionById(transactionId) == null) {
+                return Outcome.failed(KioskProtocol.NOT_FOUND, "No such loan");
+            }
+            return Outcome.failed(KioskProtocol.CONFLICT, "Already returned");
+        }
+
+        private void search() {
+            byte field = in.get();
+            String query = KioskProtocol.getString(in, loop.scratch);
+            int limit = Math.min(in.getShort() & 0xFFFF, MAX_SEARCH_RESULTS);
+
+            Stream<Book> matches;
+            if (field == KioskProtocol.BY_TITLE) {
+                matches = libraryManager.streamBooksByTitle(query);
+            } else if (field == KioskProtocol.BY_AUTHOR) {
+                matches = libraryManager.streamBooksByAuthor(query);
+            } else if (field == KioskProtocol.BY_KEYWORD) {
+                matches = libraryManager.streamBooksByKeyword(query);
+            } else {
+                fail(KioskProtocol.BAD_REQUEST, "Unknown search field");
+                return;
+            }
+
+            out.put(KioskProtocol.OK);
+            int countPosition = out.position();
+            out.putShort((short) 0);
+            int count = 0;
+            Iterator<Book> iterator = matches.limit(limit).iterator();
+            while (iterator.hasNext()) {
+                putBook(iterator.next());
+                count++;
+            }
+            out.putShort(countPosition, (short) count);
+        }
+
+        private void putBook(Book book) {
+            // One details snapshot, so the fields all belong to the same version
+            Book.Details details = book.getDetails();
+            KioskProtocol.putString(out, book.getId());
+            KioskProtocol.putString(out, details.getTitle());
+            KioskProtocol.putString(out, details.getAuthor());
+            out.put((byte) (book.isAvailable() ? 1 : 0));
+        }
+
+        private void fail(byte status, String message) {
+            out.put(status);
+            KioskProtocol.putString(out, message);
+        }
+
+        // Returns true once nothing is left to write
+        private boolean flush() throws IOException {
+            if (out == null) {
+                return true;
+            }
+            out.flip();
+            channel.write(out);
+            if (out.hasRemaining()) {
+                out.compact();
+                return false;
+            }
+            loop.pool.release(out);
+            out = null;
+            return true;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            closeQuietly(channel);
+            if (in != null) {
+                loop.pool.release(in);
+                in = null;
+            }
+            if (out != null) {
+                loop.pool.release(out);
+                out = null;
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more to do for a connection that is going away
+        }
+    }
+}
@@ -1,9 +1,83 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class LibraryManagementSystem {
     public static void main(String[] args) {
         System.out.println("Welcome to Library Management System");
         
-        LibraryManager manager = new LibraryManager();
+        // --id-state <directory> keeps issued IDs unique across restarts
+        // --http <port> serves the JSON API alongside the console
+        // --kiosk <port> serves the binary self-checkout protocol alongside the console
+        String idState = null;
+        int httpPort = -1;
+        int kioskPort = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--id-state") && i + 1 < args.length) {
+                idState = args[++i];
+            } else if (args[i].equals("--http") && i + 1 < args.length && isPort(args[i + 1])) {
+                httpPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--kiosk") && i + 1 < args.length && isPort(args[i + 1])) {
+                kioskPort = Integer.parseInt(args[++i]);
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                System.out.println("Usage: java LibraryManagementSystem [--id-state <directory>] [--http <port>] [--kiosk <port>]");
+                return;
+            }
+        }
+        
+        LibraryManager manager;
+        try {
+            manager = idState == null ? new LibraryManager() : new LibraryManager(Paths.get(idState));
+        } catch (IOException e) {
+            System.out.println("Cannot use ID state directory " + idState + ": " + e.getMessage());
+            return;
+        }
+        HttpFrontEnd http = null;
+        if (httpPort >= 0) {
+            http = new HttpFrontEnd(manager);
+            try {
+                http.start(httpPort);
+            } catch (IOException e) {
+                System.out.println("Cannot serve HTTP on port " + httpPort + ": " + e.getMessage());
+                return;
+            }
+            System.out.println("Serving the JSON API on port " + http.getPort());
+        }
+        
+        KioskServer kiosk = null;
+        if (kioskPort >= 0) {
+            kiosk = new KioskServer(manager);
+            try {
+                kiosk.start(kioskPort);
+            } catch (IOException e) {
+                System.out.println("Cannot serve kiosks on port " + kioskPort + ": " + e.getMessage());
+                if (http != null) {
+                    http.stop();
+                }
+                return;
+            }
+            System.out.println("Serving self-checkout kiosks on port " + kiosk.getPort());
+        }
+        
         ConsoleUI ui = new ConsoleUI(manager);
-        ui.start();
+        try {
+            ui.start();
+        } finally {
+            if (http != null) {
+                http.stop();
+            }
+            if (kiosk != null) {
+                kiosk.stop();
+            }
+        }
+    }
+    
+    private static boolean isPort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            return port >= 0 && port <= 65535;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 } 
\ No newline at end of file
@@ -1,36 +1,80 @@
 import services.BookService;
+import services.CatalogExporter;
 import services.PatronService;
 import services.ReservationService;
 import services.TransactionService;
+import services.UpdateResult;
 import models.Book;
+import models.EntityIds;
 import models.Patron;
 import models.Reservation;
 import models.Transaction;
 import datastructures.LinkedList;
-
+import utils.IdAllocator;
+import utils.StripedLocks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Comparator;
 import java.util.function.Consumer;
-
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+// Several desks may share one LibraryManager. Each service guards its own structures;
+// operations that check one entity and then change another (borrow, return, reserve)
+// also hold the stripe locks of the book and patron involved, so two desks cannot both
+// lend the same copy or act on a record that another desk is removing. Edits of books
+// and patrons are optimistic instead: they carry the version the desk last saw.
 public class LibraryManager {
     private BookService bookService;
     private PatronService patronService;
     private TransactionService transactionService;
     private ReservationService reservationService;
+    private StripedLocks bookLocks;
+    private StripedLocks patronLocks;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final long EXPORT_MEMORY_BUDGET = 16L << 20;
+    private static final int LOCK_STRIPES = 64;
 
     public LibraryManager() {
-        bookService = new BookService();
-        patronService = new PatronService();
-        transactionService = new TransactionService(bookService, patronService);
-        reservationService = new ReservationService(bookService, patronService);
+        this(new IdAllocator(), new IdAllocator(), new IdAllocator(), new IdAllocator());
+    }
+
+    // Records how far each kind of ID has been issued in files under the directory, so a
+    // restarted library never hands out an ID it used before
+    public LibraryManager(Path idStateDirectory) throws IOException {
+        this(idAllocator(idStateDirectory, "book-ids"), idAllocator(idStateDirectory, "patron-ids"),
+                idAllocator(idStateDirectory, "transaction-ids"), idAllocator(idStateDirectory, "reservation-ids"));
+    }
+
+    private LibraryManager(IdAllocator bookIds, IdAllocator patronIds, IdAllocator transactionIds,
+                           IdAllocator reservationIds) {
+        bookService = new BookService(bookIds);
+        patronService = new PatronService(patronIds);
+        bookLocks = new StripedLocks(LOCK_STRIPES);
+        patronLocks = new StripedLocks(LOCK_STRIPES);
+        // Loans lock the same stripes, so a borrow and a reservation of one book exclude each other
+        transactionService = new TransactionService(bookService, patronService, transactionIds, bookLocks, patronLocks);
+        reservationService = new ReservationService(bookService, patronService, reservationIds);
         
         // Add some sample data
         addSampleData();
     }
 
+    private static IdAllocator idAllocator(Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        return new IdAllocator(directory.resolve(name));
+    }
+
     private void addSampleData() {
         // Add sample books
         bookService.addBook("The Great Gatsby", "F. Scott Fitzgerald", "9780743273565", 
@@ -62,13 +106,23 @@ public class LibraryManager {
     }
 
     public boolean removeBook(String id) {
-        return bookService.removeBook(id);
+        Lock bookLock = bookLocks.forKey(EntityIds.parse(EntityIds.BOOK, id));
+        bookLock.lock();
+        try {
+            return bookService.removeBook(id);
+        } finally {
+            bookLock.unlock();
+        }
     }
 
     public Book findBookById(String id) {
         return bookService.findBookById(id);
     }
 
+    public Book findBookByKey(int key) {
+        return bookService.findBookByKey(key);
+    }
+
     public LinkedList<Book> findBooksByTitle(String title) {
         return bookService.findBooksByTitle(title);
     }
@@ -77,10 +131,50 @@ public class LibraryManager {
         return bookService.findBooksByAuthor(author);
     }
 
+    public Stream<Book> streamBooksByTitle(String title) {
+        return bookService.streamBooksByTitle(title);
+    }
+
+    public Stream<Book> streamBooksByAuthor(String author) {
+        return bookService.streamBooksByAuthor(author);
+    }
+
+    public LinkedList<Book> findBooksByTitlePrefix(String prefix) {
+        return bookService.findBooksByTitlePrefix(prefix);
+    }
+
+    public LinkedList<Book> findBooksByAuthorPrefix(String prefix) {
+        return bookService.findBooksByAuthorPrefix(prefix);
+    }
+
+    public LinkedList<String> suggestTitleWords(String prefix, int limit) {
+        return bookService.suggestTitleWords(prefix, limit);
+    }
+
+    public LinkedList<String> suggestAuthorWords(String prefix, int limit) {
+        return bookService.suggestAuthorWords(prefix, limit);
+    }
+
     public LinkedList<Book> getAllBooks() {
         return bookService.getAllBooks();
     }
 
+    public int getBookCount() {
+        return bookService.getBookCount();
+    }
+
+    public LinkedList<Book> getBooksPage(int offset, int limit) {
+        return bookService.getBooksPage(offset, limit);
+    }
+
+    public LinkedList<Book> getBooksSortedByTitle(int offset, int limit) {
+        return bookService.getBooksSortedByTitle(offset, limit);
+    }
+
+    public LinkedList<Book> getBooksSortedByAuthor(int offset, int limit) {
+        return bookService.getBooksSortedByAuthor(offset, limit);
+    }
+
     public void displayBooksSortedByTitle(Consumer<Book> displayFunction) {
         bookService.displayBooksSortedByTitle(displayFunction);
     }
@@ -89,27 +183,32 @@ public class LibraryManager {
         bookService.displayBooksSortedByAuthor(displayFunction);
     }
 
-    public void updateBook(String id, String title, String author, String isbn, String publicationDate, String genre) {
+    // Blank fields keep their current value. The edit is applied only if the book is still
+    // at expectedVersion (the version the caller displayed), otherwise CONFLICT is returned.
+    public UpdateResult updateBook(String id, long expectedVersion, String title, String author, String isbn,
+                                   String publicationDate, String genre) {
         Book existingBook = bookService.findBookById(id);
-        if (existingBook != null) {
-            try {
-                LocalDate date = publicationDate != null && !publicationDate.isEmpty() 
-                    ? LocalDate.parse(publicationDate, DATE_FORMATTER)
-                    : existingBook.getPublicationDate();
-                
-                Book updatedBook = new Book(
-                    id,
-                    title != null && !title.isEmpty() ? title : existingBook.getTitle(),
-                    author != null && !author.isEmpty() ? author : existingBook.getAuthor(),
-                    isbn != null && !isbn.isEmpty() ? isbn : existingBook.getIsbn(),
-                    date,
-                    genre != null && !genre.isEmpty() ? genre : existingBook.getGenre()
-                );
-                updatedBook.setAvailable(existingBook.isAvailable());
-                bookService.updateBook(updatedBook);
-            } catch (DateTimeParseException e) {
-                System.out.println("Invalid date format. Please use yyyy-MM-dd.");
-            }
+        Book.Details current = existingBook == null ? null : existingBook.getDetails();
+        UpdateResult rejected = checkEdit(current, Book.Details::getVersion, expectedVersion);
+        if (rejected != null) {
+            return rejected;
+        }
+        try {
+            LocalDate date = publicationDate != null && !publicationDate.isEmpty() 
+                ? LocalDate.parse(publicationDate, DATE_FORMATTER)
+                : current.getPublicationDate();
+            
+            Book.Details edited = new Book.Details(
+                title != null && !title.isEmpty() ? title : current.getTitle(),
+                author != null && !author.isEmpty() ? author : current.getAuthor(),
+                isbn != null && !isbn.isEmpty() ? isbn : current.getIsbn(),
+                date,
+                genre != null && !genre.isEmpty() ? genre : current.getGenre()
+            );
+            return bookService.updateBook(existingBook.getKey(), expectedVersion, edited);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format. Please use yyyy-MM-dd.");
+            return UpdateResult.INVALID;
         }
     }
 
@@ -119,36 +218,72 @@ public class LibraryManager {
     }
 
     public boolean removePatron(String id) {
-        return patronService.removePatron(id);
+        Lock patronLock = patronLocks.forKey(EntityIds.parse(EntityIds.PATRON, id));
+        patronLock.lock();
+        try {
+            return patronService.removePatron(id);
+        } finally {
+            patronLock.unlock();
+        }
     }
 
     public Patron findPatronById(String id) {
         return patronService.findPatronById(id);
     }
 
+    public Patron findPatronByKey(int key) {
+        return patronService.findPatronByKey(key);
+    }
+
     public LinkedList<Patron> findPatronsByName(String name) {
         return patronService.findPatronsByName(name);
     }
 
+    public Stream<Patron> streamPatronsByName(String name) {
+        return patronService.streamPatronsByName(name);
+    }
+
     public LinkedList<Patron> getAllPatrons() {
         return patronService.getAllPatrons();
     }
 
-    public void updatePatron(String id, String name, String contactInfo, String address, String membershipDate) {
+    public int getPatronCount() {
+        return patronService.getPatronCount();
+    }
+
+    public LinkedList<Patron> getPatronsPage(int offset, int limit) {
+        return patronService.getPatronsPage(offset, limit);
+    }
+
+    public UpdateResult updatePatron(String id, long expectedVersion, String name, String contactInfo,
+                                     String address, String membershipDate) {
         Patron existingPatron = patronService.findPatronById(id);
-        if (existingPatron != null) {
-            Patron updatedPatron = new Patron(
-                id,
-                name != null && !name.isEmpty() ? name : existingPatron.getName(),
-                contactInfo != null && !contactInfo.isEmpty() ? contactInfo : existingPatron.getContactInfo(),
-                address != null && !address.isEmpty() ? address : existingPatron.getAddress(),
-                membershipDate != null && !membershipDate.isEmpty() ? membershipDate : existingPatron.getMembershipDate()
-            );
-            patronService.updatePatron(updatedPatron);
+        Patron.Details current = existingPatron == null ? null : existingPatron.getDetails();
+        UpdateResult rejected = checkEdit(current, Patron.Details::getVersion, expectedVersion);
+        if (rejected != null) {
+            return rejected;
+        }
+        Patron.Details edited = new Patron.Details(
+            name != null && !name.isEmpty() ? name : current.getName(),
+            contactInfo != null && !contactInfo.isEmpty() ? contactInfo : current.getContactInfo(),
+            address != null && !address.isEmpty() ? address : current.getAddress(),
+            membershipDate != null && !membershipDate.isEmpty() ? membershipDate : current.getMembershipDate()
+        );
+        return patronService.updatePatron(existingPatron.getKey(), expectedVersion, edited);
+    }
+
+    // Shared start of updateBook and updatePatron: NOT_FOUND or CONFLICT when the edit cannot
+    // apply, or null to merge the blank fields from these details. The service compares the
+    // version again under its lock, so this only spares building an edit that would fail.
+    private static <D> UpdateResult checkEdit(D current, ToLongFunction<D> version, long expectedVersion) {
+        if (current == null) {
+            return UpdateResult.NOT_FOUND;
         }
+        return version.applyAsLong(current) == expectedVersion ? null : UpdateResult.CONFLICT;
     }
 
     // TRANSACTION MANAGEMENT
+    // The transaction service takes the book and patron stripes itself
     public Transaction borrowBook(String bookId, String patronId, int daysToReturn) {
         return transactionService.borrowBook(bookId, patronId, daysToReturn);
     }
@@ -177,17 +312,56 @@ public class LibraryManager {
         return transactionService.getTransactionsByBookId(bookId);
     }
 
+    public boolean changeDueDate(String transactionId, String dueDate) {
+        try {
+            return transactionService.changeDueDate(transactionId, LocalDate.parse(dueDate, DATE_FORMATTER));
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format. Please use yyyy-MM-dd.");
+            return false;
+        }
+    }
+
+    public void addLoanListener(TransactionService.LoanListener listener) {
+        transactionService.addLoanListener(listener);
+    }
+
+    public void removeLoanListener(TransactionService.LoanListener listener) {
+        transactionService.removeLoanListener(listener);
+    }
+
+    public void compactTransactionArchive() {
+        transactionService.compactArchive();
+    }
+
+    public LinkedList<Transaction> getTransactionsByPatronId(String patronId, int offset, int limit) {
+        return transactionService.getTransactionsByPatronId(patronId, offset, limit);
+    }
+
+    public LinkedList<Transaction> getTransactionsByBookId(String bookId, int offset, int limit) {
+        return transactionService.getTransactionsByBookId(bookId, offset, limit);
+    }
+
     public LinkedList<Transaction> getOverdueTransactions() {
         return transactionService.getOverdueTransactions();
     }
 
     // RESERVATION MANAGEMENT
     public Reservation reserveBook(String bookId, String patronId) {
-        return reservationService.reserveBook(bookId, patronId);
+        return withBookAndPatron(EntityIds.parse(EntityIds.BOOK, bookId), EntityIds.parse(EntityIds.PATRON, patronId),
+                () -> reservationService.reserveBook(bookId, patronId));
+    }
+
+    public Reservation findActiveReservation(String bookId, String patronId) {
+        return reservationService.findActiveReservation(bookId, patronId);
     }
 
     public boolean cancelReservation(String reservationId) {
-        return reservationService.cancelReservation(reservationId);
+        Reservation reservation = reservationService.findReservationById(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        return withBookAndPatron(reservation.getBookKey(), reservation.getPatronKey(),
+                () -> reservationService.cancelReservation(reservationId));
     }
 
     public Reservation getNextReservation(String bookId) {
@@ -195,7 +369,18 @@ public class LibraryManager {
     }
 
     public boolean fulfillReservation(String reservationId) {
-        return reservationService.fulfillReservation(reservationId);
+        Reservation reservation = reservationService.findReservationById(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        return withBookAndPatron(reservation.getBookKey(), reservation.getPatronKey(),
+                () -> reservationService.fulfillReservation(reservationId));
+    }
+
+    // Always the book's stripe first, then the patron's: with one fixed order no two desks
+    // can each hold a lock the other is waiting for
+    private <T> T withBookAndPatron(int bookKey, int patronKey, Supplier<T> action) {
+        return bookLocks.withKeys(bookKey, patronLocks, patronKey, action);
     }
 
     public Reservation findReservationById(String id) {
@@ -210,6 +395,10 @@ public class LibraryManager {
         return reservationService.getActiveReservations();
     }
 
+    public Stream<Reservation> streamActiveReservations() {
+        return reservationService.streamActiveReservations();
+    }
+
     public LinkedList<Reservation> getReservationsByPatronId(String patronId) {
         return reservationService.getReservationsByPatronId(patronId);
     }
@@ -221,6 +410,10 @@ public class LibraryManager {
     public int getQueuePosition(String bookId, String patronId) {
         return reservationService.getQueuePosition(bookId, patronId);
     }
+
+    public int getQueuePosition(Reservation reservation) {
+        return reservationService.getQueuePosition(reservation);
+    }
     
     // SORTING UTILITIES
     public LinkedList<Book> sortBooksByTitle(LinkedList<Book> books) {
@@ -235,45 +428,41 @@ public class LibraryManager {
         return sortBooks(books, Comparator.comparing(Book::getPublicationDate));
     }
     
+    // CATALOG EXPORT
+    // Sorted CSV exports that spill to temporary files, so the catalog may exceed the heap
+    public boolean exportBooksByTitle(Path target) {
+        return exportBooks(target, Comparator.comparing(Book::getTitle));
+    }
+
+    public boolean exportBooksByAuthor(Path target) {
+        return exportBooks(target, Comparator.comparing(Book::getAuthor));
+    }
+
+    public boolean exportBooksByPublicationDate(Path target) {
+        return exportBooks(target, Comparator.comparing(Book::getPublicationDate));
+    }
+
+    private boolean exportBooks(Path target, Comparator<Book> comparator) {
+        CatalogExporter exporter = new CatalogExporter(EXPORT_MEMORY_BUDGET);
+        try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            exporter.export(bookService.streamBooks().iterator(), comparator, out);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            return false;
+        }
+    }
+
     private LinkedList<Book> sortBooks(LinkedList<Book> books, Comparator<Book> comparator) {
         // Create a new list to avoid modifying the original
         LinkedList<Book> sortedBooks = new LinkedList<>();
         
         // Copy all books to sortedBooks
-        for (int i = 0; i < books.size(); i++) {
-            sortedBooks.add(books.get(i));
-        }
-        
-        // Bubble sort implementation
-        int n = sortedBooks.size();
-        for (int i = 0; i < n - 1; i++) {
-            for (int j = 0; j < n - i - 1; j++) {
-                Book book1 = sortedBooks.get(j);
-                Book book2 = sortedBooks.get(j + 1);
-                
-                if (comparator.compare(book1, book2) > 0) {
-                    // Swap elements by creating a new list
-                    LinkedList<Book> tempList = new LinkedList<>();
-                    
-                    // Add all elements before j
-                    for (int k = 0; k < j; k++) {
-                        tempList.add(sortedBooks.get(k));
-                    }
-                    
-                    // Add the swapped elements
-                    tempList.add(book2);
-                    tempList.add(book1);
-                    
-                    // Add all elements after j+1
-                    for (int k = j + 2; k < n; k++) {
-                        tempList.add(sortedBooks.get(k));
-                    }
-                    
-                    sortedBooks = tempList;
-                }
-            }
+        for (Book book : books) {
+            sortedBooks.add(book);
         }
         
+        sortedBooks.sort(comparator);
         return sortedBooks;
     }
     
@@ -287,20 +476,22 @@ public class LibraryManager {
     }
     
     public LinkedList<Book> searchBooksByKeyword(String keyword) {
-        LinkedList<Book> results = new LinkedList<>();
-        LinkedList<Book> allBooks = bookService.getAllBooks();
-        
-        keyword = keyword.toLowerCase();
-        
-        for (int i = 0; i < allBooks.size(); i++) {
-            Book book = allBooks.get(i);
-            if (book.getTitle().toLowerCase().contains(keyword) || 
-                book.getAuthor().toLowerCase().contains(keyword) ||
-                book.getGenre().toLowerCase().contains(keyword)) {
-                results.add(book);
-            }
-        }
-        
-        return results;
+        return bookService.searchBooksByKeyword(keyword);
+    }
+
+    public Stream<Book> streamBooksByKeyword(String keyword) {
+        return bookService.streamBooksByKeyword(keyword);
+    }
+
+    public LinkedList<Book> findBooksMatching(Predicate<? super Book> filter) {
+        return bookService.scanBooks(filter);
+    }
+
+    public LinkedList<Book> fuzzySearchBooks(String query, int maxDistance) {
+        return bookService.fuzzySearchBooks(query, maxDistance);
+    }
+
+    public LinkedList<Patron> fuzzySearchPatrons(String name, int maxDistance) {
+        return patronService.fuzzySearchPatronsByName(name, maxDistance);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+import datastructures.LinkedList;
+import models.Book;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+// Times sortBooksByTitle, sortBooksByAuthor and sortBooksByPublicationDate over a generated
+// catalog, next to java.util.ArrayList.sort of the same books as a baseline, and checks
+// each result is in order. Run from the project root:
+//   java SortBenchmark [books]
+public class SortBenchmark {
+    private static final int DEFAULT_BOOKS = 100_000;
+    private static final int ROUNDS = 3;
+
+    private interface Sort {
+        LinkedList<Book> apply(LinkedList<Book> books);
+    }
+
+    public static void main(String[] args) {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        LibraryManager manager = new LibraryManager();
+        Random random = new Random(7);
+        for (int i = 0; i < bookCount; i++) {
+            LocalDate published = LocalDate.ofEpochDay(-20_000 + random.nextInt(40_000));
+            manager.addBook(randomWords(random, 1 + random.nextInt(4)), randomWords(random, 2), "isbn-" + i,
+                    published.toString(), "fiction");
+        }
+        LinkedList<Book> books = manager.getAllBooks();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: %,d books%n", round, books.size());
+            measure("title", books, manager::sortBooksByTitle, Comparator.comparing(Book::getTitle));
+            measure("author", books, manager::sortBooksByAuthor, Comparator.comparing(Book::getAuthor));
+            measure("publication date", books, manager::sortBooksByPublicationDate,
+                    Comparator.comparing(Book::getPublicationDate));
+        }
+    }
+
+    private static void measure(String field, LinkedList<Book> books, Sort sort, Comparator<Book> order) {
+        long start = System.nanoTime();
+        LinkedList<Book> sorted = sort.apply(books);
+        long sortNanos = System.nanoTime() - start;
+
+        ArrayList<Book> baseline = new ArrayList<>(books.size());
+        for (Book book : books) {
+            baseline.add(book);
+        }
+        start = System.nanoTime();
+        baseline.sort(order);
+        long baselineNanos = System.nanoTime() - start;
+
+        Book previous = null;
+        for (Book book : sorted) {
+            if (previous != null && order.compare(previous, book) > 0) {
+                throw new IllegalStateException("Books out of order by " + field);
+            }
+            previous = book;
+        }
+        if (sorted.size() != books.size()) {
+            throw new IllegalStateException("Sorting by " + field + " lost books");
+        }
+        System.out.printf("         by %-16s %6.0f ms (ArrayList.sort %4.0f ms)%n",
+                field, sortNanos / 1e6, baselineNanos / 1e6);
+    }
+
+    private static String randomWords(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append((char) ('A' + random.nextInt(26)));
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+}
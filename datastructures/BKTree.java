@@ -0,0 +1,167 @@
+package datastructures;
+
+import java.util.ArrayDeque;
+
+// Burkhard-Keller tree over a term vocabulary under Levenshtein distance. Children are
+// keyed by their distance to the parent, so by the triangle inequality a search for
+// terms within k of the query only descends into children keyed d - k .. d + k.
+// Terms are reference counted; a term whose count drops to zero stays in place as a
+// routing node and is simply no longer reported.
+public class BKTree {
+    private Node root;
+    private int size;
+
+    private static class Node {
+        final String term;
+        int references;
+        int[] childDistances;
+        Node[] children;
+        int childCount;
+
+        Node(String term) {
+            this.term = term;
+            this.references = 1;
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (childDistances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (children == null) {
+                childDistances = new int[4];
+                children = new Node[4];
+            } else if (childCount == children.length) {
+                int[] grownDistances = new int[childCount * 2];
+                Node[] grownChildren = new Node[childCount * 2];
+                System.arraycopy(childDistances, 0, grownDistances, 0, childCount);
+                System.arraycopy(children, 0, grownChildren, 0, childCount);
+                childDistances = grownDistances;
+                children = grownChildren;
+            }
+            childDistances[childCount] = distance;
+            children[childCount++] = child;
+        }
+    }
+
+    // Scratch rows for the distance computation, one set per operation so concurrent searches do not share them
+    private static class Rows {
+        int[] previous = new int[16];
+        int[] current = new int[16];
+    }
+
+    public interface MatchConsumer {
+        void accept(String term, int distance);
+    }
+
+    public BKTree() {
+        root = null;
+        size = 0;
+    }
+
+    public void add(String term) {
+        if (term == null || term.isEmpty()) {
+            return;
+        }
+        if (root == null) {
+            root = new Node(term);
+            size++;
+            return;
+        }
+        Rows rows = new Rows();
+        Node node = root;
+        while (true) {
+            int distance = distance(term, node.term, rows);
+            if (distance == 0) {
+                if (node.references++ == 0) {
+                    size++;
+                }
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new Node(term));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public void remove(String term) {
+        Rows rows = new Rows();
+        Node node = root;
+        while (node != null) {
+            int distance = distance(term, node.term, rows);
+            if (distance == 0) {
+                if (node.references > 0 && --node.references == 0) {
+                    size--;
+                }
+                return;
+            }
+            node = node.child(distance);
+        }
+    }
+
+    // Reports every live term within maxDistance edits of the query
+    public void search(String query, int maxDistance, MatchConsumer action) {
+        if (root == null || query == null) {
+            return;
+        }
+        Rows rows = new Rows();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.term, rows);
+            if (distance <= maxDistance && node.references > 0) {
+                action.accept(node.term, distance);
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                if (Math.abs(node.childDistances[i] - distance) <= maxDistance) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Two-row Levenshtein distance
+    private static int distance(String a, String b, Rows rows) {
+        int columns = b.length() + 1;
+        if (rows.previous.length < columns) {
+            rows.previous = new int[columns * 2];
+            rows.current = new int[columns * 2];
+        }
+        int[] previous = rows.previous;
+        int[] current = rows.current;
+        for (int j = 0; j < columns; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j < columns; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[columns - 1];
+    }
+}
@@ -0,0 +1,132 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Times typo-tolerant lookups through the BK-tree against a brute-force scan that computes
+// the edit distance to every term, and checks both find the same terms. Run from the project root:
+//   java datastructures.BKTreeBenchmark [terms] [queries]
+public class BKTreeBenchmark {
+    private static final int DEFAULT_TERMS = 50_000;
+    private static final int DEFAULT_QUERIES = 200;
+    private static final int MAX_DISTANCE = 2;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int termCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TERMS;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        Random random = new Random(42);
+
+        String[] terms = new String[termCount];
+        BKTree tree = new BKTree();
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = randomWord(random);
+            tree.add(terms[i]);
+        }
+        // Misspell existing terms so most queries have matches, as a user typo would
+        String[] queries = new String[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            queries[i] = misspell(terms[random.nextInt(termCount)], random);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long[] treeMatches = {0};
+            for (String query : queries) {
+                tree.search(query, MAX_DISTANCE, (term, distance) -> treeMatches[0]++);
+            }
+            long treeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long bruteMatches = 0;
+            for (String query : queries) {
+                for (String term : terms) {
+                    if (distance(query, term) <= MAX_DISTANCE) {
+                        bruteMatches++;
+                    }
+                }
+            }
+            long bruteNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: %,d queries within %d edits over %,d terms%n",
+                    round, queryCount, MAX_DISTANCE, termCount);
+            System.out.printf("         BK-tree %.0f ms (%.1f us/query), brute force %.0f ms (%.1f us/query), %.1fx faster%n",
+                    treeNanos / 1e6, treeNanos / 1e3 / queryCount, bruteNanos / 1e6, bruteNanos / 1e3 / queryCount,
+                    (double) bruteNanos / treeNanos);
+            if (round == 1) {
+                verify(tree, terms, queries);
+            }
+            System.out.printf("         %,d matches from the tree, %,d from brute force%n", treeMatches[0], bruteMatches);
+        }
+    }
+
+    // Duplicate words are one tree entry but several brute-force hits, so compare distinct terms per query
+    private static void verify(BKTree tree, String[] terms, String[] queries) {
+        String[] distinct = Arrays.stream(terms).distinct().sorted().toArray(String[]::new);
+        for (String query : queries) {
+            LinkedList<String> found = new LinkedList<>();
+            tree.search(query, MAX_DISTANCE, (term, distance) -> found.add(term));
+            String[] fromTree = new String[found.size()];
+            int i = 0;
+            for (String term : found) {
+                fromTree[i++] = term;
+            }
+            Arrays.sort(fromTree);
+            String[] fromScan = Arrays.stream(distinct).filter(term -> distance(query, term) <= MAX_DISTANCE)
+                    .toArray(String[]::new);
+            if (!Arrays.equals(fromTree, fromScan)) {
+                throw new IllegalStateException("BK-tree and brute force disagree on \"" + query + "\"");
+            }
+        }
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[4 + random.nextInt(9)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    // One or two random substitutions, insertions or deletions
+    private static String misspell(String word, Random random) {
+        StringBuilder builder = new StringBuilder(word);
+        int edits = 1 + random.nextInt(2);
+        for (int i = 0; i < edits && builder.length() > 1; i++) {
+            int position = random.nextInt(builder.length());
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.setCharAt(position, letter);
+                    break;
+                case 1:
+                    builder.insert(position, letter);
+                    break;
+                default:
+                    builder.deleteCharAt(position);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    // Two-row Levenshtein, written separately from the tree's so the check is independent
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
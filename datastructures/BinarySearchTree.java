@@ -1,121 +1,549 @@
 package datastructures;
 
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Consumer;
 
+// Red-black tree: every operation is iterative and the height stays within
+// 2 * log2(n + 1), so sequential keys no longer degrade it into a list.
+// With allowDuplicates the tree acts as a sorted multimap: elements that compare
+// equal are kept in insertion order and delete() removes the one that equals() the argument.
+// Each node also counts the nodes in its subtree, which gives O(log n) select() and rank(),
+// so a page of the sorted order costs O(log n + page size).
 public class BinarySearchTree<T> {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
     private Node<T> root;
     private Comparator<T> comparator;
+    private boolean allowDuplicates;
+    private int size;
+    private int modCount;
 
     private static class Node<T> {
         T data;
         Node<T> left;
         Node<T> right;
+        Node<T> parent;
+        boolean color;
+        int count; // nodes in this subtree
 
-        Node(T data) {
+        Node(T data, Node<T> parent) {
             this.data = data;
             this.left = null;
             this.right = null;
+            this.parent = parent;
+            this.color = RED;
+            this.count = 1;
         }
     }
 
     public BinarySearchTree(Comparator<T> comparator) {
+        this(comparator, false);
+    }
+
+    public BinarySearchTree(Comparator<T> comparator, boolean allowDuplicates) {
         this.root = null;
         this.comparator = comparator;
+        this.allowDuplicates = allowDuplicates;
+        this.size = 0;
     }
 
     public void insert(T data) {
-        root = insertRec(root, data);
+        Node<T> parent = null;
+        Node<T> current = root;
+        int compareResult = 0;
+
+        while (current != null) {
+            parent = current;
+            compareResult = comparator.compare(data, current.data);
+            if (compareResult < 0) {
+                current = current.left;
+            } else if (compareResult > 0 || allowDuplicates) {
+                current = current.right;
+            } else {
+                return;
+            }
+        }
+
+        Node<T> newNode = new Node<>(data, parent);
+        if (parent == null) {
+            root = newNode;
+        } else if (compareResult < 0) {
+            parent.left = newNode;
+        } else {
+            parent.right = newNode;
+        }
+        for (Node<T> ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.count++;
+        }
+        size++;
+        modCount++;
+        fixAfterInsertion(newNode);
+    }
+
+    public boolean search(T data) {
+        return findNode(data) != null;
     }
 
-    private Node<T> insertRec(Node<T> root, T data) {
-        if (root == null) {
-            return new Node<>(data);
+    private Node<T> findNode(T data) {
+        Node<T> current = root;
+        while (current != null) {
+            int compareResult = comparator.compare(data, current.data);
+            if (compareResult == 0) {
+                return current;
+            }
+            current = compareResult < 0 ? current.left : current.right;
         }
+        return null;
+    }
 
-        int compareResult = comparator.compare(data, root.data);
-        if (compareResult < 0) {
-            root.left = insertRec(root.left, data);
-        } else if (compareResult > 0) {
-            root.right = insertRec(root.right, data);
+    public void delete(T data) {
+        Node<T> node = allowDuplicates ? findEqualNode(data) : findNode(data);
+        if (node != null) {
+            deleteNode(node);
         }
+    }
 
-        return root;
+    private Node<T> findEqualNode(T data) {
+        for (Node<T> node = lowerBound(data); node != null && comparator.compare(node.data, data) == 0;
+                node = successor(node)) {
+            if (node.data.equals(data)) {
+                return node;
+            }
+        }
+        return null;
     }
 
-    public boolean search(T data) {
-        return searchRec(root, data);
+    // Leftmost node that compares above the key
+    private Node<T> upperBound(T key) {
+        Node<T> current = root;
+        Node<T> candidate = null;
+        while (current != null) {
+            if (comparator.compare(current.data, key) > 0) {
+                candidate = current;
+                current = current.left;
+            } else {
+                current = current.right;
+            }
+        }
+        return candidate;
     }
 
-    private boolean searchRec(Node<T> root, T data) {
-        if (root == null) {
-            return false;
+    // Leftmost node that does not compare below the key
+    private Node<T> lowerBound(T key) {
+        Node<T> current = root;
+        Node<T> candidate = null;
+        while (current != null) {
+            if (comparator.compare(current.data, key) >= 0) {
+                candidate = current;
+                current = current.left;
+            } else {
+                current = current.right;
+            }
         }
+        return candidate;
+    }
 
-        int compareResult = comparator.compare(data, root.data);
-        if (compareResult == 0) {
-            return true;
-        } else if (compareResult < 0) {
-            return searchRec(root.left, data);
-        } else {
-            return searchRec(root.right, data);
+    public LinkedList<T> findAll(T key) {
+        LinkedList<T> result = new LinkedList<>();
+        for (Node<T> node = lowerBound(key); node != null && comparator.compare(node.data, key) == 0;
+                node = successor(node)) {
+            result.add(node.data);
         }
+        return result;
     }
 
-    public void delete(T data) {
-        root = deleteRec(root, data);
+    // Elements in [from, to) in sorted order
+    public LinkedList<T> findRange(T from, T to) {
+        LinkedList<T> result = new LinkedList<>();
+        for (Iterator<T> iterator = rangeIterator(from, to); iterator.hasNext(); ) {
+            result.add(iterator.next());
+        }
+        return result;
     }
 
-    private Node<T> deleteRec(Node<T> root, T data) {
-        if (root == null) {
-            return null;
+    // Lazy findRange(): each step is one successor move, so stopping early costs nothing more
+    public Iterator<T> rangeIterator(T from, T to) {
+        return new RangeIterator(lowerBound(from), to);
+    }
+
+    private class RangeIterator implements Iterator<T> {
+        private Node<T> next;
+        private final T to;
+        private final int expectedModCount;
+
+        RangeIterator(Node<T> first, T to) {
+            this.next = first;
+            this.to = to;
+            this.expectedModCount = modCount;
         }
 
-        int compareResult = comparator.compare(data, root.data);
-        if (compareResult < 0) {
-            root.left = deleteRec(root.left, data);
-        } else if (compareResult > 0) {
-            root.right = deleteRec(root.right, data);
-        } else {
-            // Node with only one child or no child
-            if (root.left == null) {
-                return root.right;
-            } else if (root.right == null) {
-                return root.left;
+        @Override
+        public boolean hasNext() {
+            return next != null && comparator.compare(next.data, to) < 0;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            T data = next.data;
+            next = successor(next);
+            return data;
+        }
+    }
+
+    // Like rangeIterator(), but each step searches again for the element after the last one
+    // returned rather than following node links, so inserts and deletes between steps are
+    // tolerated at O(log n) per element. Elements comparing equal to the last one returned
+    // are skipped, so the comparator should tell every element apart. A null bound is open.
+    public Iterator<T> seekingIterator(T from, T to) {
+        return new SeekingIterator(from, to);
+    }
+
+    private class SeekingIterator implements Iterator<T> {
+        private final T from;
+        private final T to;
+        private T last;
+        private T pending;
+        private boolean started;
 
-            // Node with two children: Get the inorder successor (smallest in the right subtree)
-            root.data = minValue(root.right);
+        SeekingIterator(T from, T to) {
+            this.from = from;
+            this.to = to;
+        }
 
-            // Delete the inorder successor
-            root.right = deleteRec(root.right, root.data);
+        @Override
+        public boolean hasNext() {
+            if (pending == null) {
+                Node<T> node;
+                if (started) {
+                    node = upperBound(last);
+                } else {
+                    node = from == null ? minNode(root) : lowerBound(from);
+                }
+                if (node != null && (to == null || comparator.compare(node.data, to) < 0)) {
+                    pending = node.data;
+                }
+            }
+            return pending != null;
         }
 
-        return root;
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = pending;
+            pending = null;
+            started = true;
+            return last;
+        }
     }
 
-    private T minValue(Node<T> root) {
-        T minValue = root.data;
-        while (root.left != null) {
-            minValue = root.left.data;
-            root = root.left;
+    // Element at this 0-based position in sorted order
+    public T select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
-        return minValue;
+        return selectNode(index).data;
     }
 
-    public void inorderTraversal(Consumer<T> consumer) {
-        inorderTraversalRec(root, consumer);
+    // Number of elements that compare below the key, i.e. the position it would be inserted at
+    public int rank(T key) {
+        int rank = 0;
+        Node<T> current = root;
+        while (current != null) {
+            if (comparator.compare(current.data, key) < 0) {
+                rank += countOf(current.left) + 1;
+                current = current.right;
+            } else {
+                current = current.left;
+            }
+        }
+        return rank;
     }
 
-    private void inorderTraversalRec(Node<T> root, Consumer<T> consumer) {
-        if (root != null) {
-            inorderTraversalRec(root.left, consumer);
-            consumer.accept(root.data);
-            inorderTraversalRec(root.right, consumer);
+    // Up to limit elements in sorted order, starting at position offset
+    public LinkedList<T> range(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        LinkedList<T> result = new LinkedList<>();
+        if (offset >= size) {
+            return result;
+        }
+        for (Node<T> node = selectNode(offset); node != null && result.size() < limit; node = successor(node)) {
+            result.add(node.data);
+        }
+        return result;
+    }
+
+    private Node<T> selectNode(int index) {
+        Node<T> current = root;
+        while (true) {
+            int leftCount = countOf(current.left);
+            if (index < leftCount) {
+                current = current.left;
+            } else if (index > leftCount) {
+                index -= leftCount + 1;
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+    }
+
+    private void deleteNode(Node<T> node) {
+        size--;
+        modCount++;
+
+        // Node with two children: copy the inorder successor into it and remove the successor instead
+        if (node.left != null && node.right != null) {
+            Node<T> successor = successor(node);
+            node.data = successor.data;
+            node = successor;
+        }
+
+        for (Node<T> ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.count--;
+        }
+        Node<T> replacement = node.left != null ? node.left : node.right;
+
+        if (replacement != null) {
+            replacement.parent = node.parent;
+            replaceChild(node, replacement);
+            node.left = node.right = node.parent = null;
+            if (node.color == BLACK) {
+                fixAfterDeletion(replacement);
+            }
+        } else if (node.parent == null) {
+            root = null;
+        } else {
+            // No children: use the node itself as the phantom leaf while rebalancing, then detach it.
+            // It counts as empty so rotations around it keep the subtree sizes right.
+            node.count = 0;
+            if (node.color == BLACK) {
+                fixAfterDeletion(node);
+            }
+            replaceChild(node, null);
+            node.parent = null;
+        }
+    }
+
+    private void replaceChild(Node<T> node, Node<T> replacement) {
+        if (node.parent == null) {
+            root = replacement;
+        } else if (node == node.parent.left) {
+            node.parent.left = replacement;
+        } else {
+            node.parent.right = replacement;
+        }
+    }
+
+    private Node<T> successor(Node<T> node) {
+        if (node.right != null) {
+            Node<T> current = node.right;
+            while (current.left != null) {
+                current = current.left;
+            }
+            return current;
+        }
+        Node<T> child = node;
+        Node<T> parent = node.parent;
+        while (parent != null && child == parent.right) {
+            child = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    private Node<T> minNode(Node<T> node) {
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    public void inorderTraversal(Consumer<T> consumer) {
+        for (Node<T> node = minNode(root); node != null; node = successor(node)) {
+            consumer.accept(node.data);
         }
     }
 
     public boolean isEmpty() {
         return root == null;
     }
-} 
\ No newline at end of file
+
+    public int size() {
+        return size;
+    }
+
+    public int height() {
+        int height = 0;
+        // Breadth-first level count keeps this iterative as well
+        Queue<Node<T>> level = new Queue<>();
+        if (root != null) {
+            level.enqueue(root);
+        }
+        while (!level.isEmpty()) {
+            height++;
+            for (int remaining = level.size(); remaining > 0; remaining--) {
+                Node<T> node = level.dequeue();
+                if (node.left != null) {
+                    level.enqueue(node.left);
+                }
+                if (node.right != null) {
+                    level.enqueue(node.right);
+                }
+            }
+        }
+        return height;
+    }
+
+    // REBALANCING
+    private void fixAfterInsertion(Node<T> node) {
+        while (node != root && colorOf(node.parent) == RED) {
+            Node<T> parent = node.parent;
+            Node<T> grandparent = parent.parent;
+            if (parent == grandparent.left) {
+                Node<T> uncle = grandparent.right;
+                if (colorOf(uncle) == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grandparent.color = RED;
+                    node = grandparent;
+                } else {
+                    if (node == parent.right) {
+                        node = parent;
+                        rotateLeft(node);
+                        parent = node.parent;
+                    }
+                    parent.color = BLACK;
+                    grandparent.color = RED;
+                    rotateRight(grandparent);
+                }
+            } else {
+                Node<T> uncle = grandparent.left;
+                if (colorOf(uncle) == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grandparent.color = RED;
+                    node = grandparent;
+                } else {
+                    if (node == parent.left) {
+                        node = parent;
+                        rotateRight(node);
+                        parent = node.parent;
+                    }
+                    parent.color = BLACK;
+                    grandparent.color = RED;
+                    rotateLeft(grandparent);
+                }
+            }
+        }
+        root.color = BLACK;
+    }
+
+    private void fixAfterDeletion(Node<T> node) {
+        while (node != root && colorOf(node) == BLACK) {
+            Node<T> parent = node.parent;
+            if (node == parent.left) {
+                Node<T> sibling = parent.right;
+                if (colorOf(sibling) == RED) {
+                    sibling.color = BLACK;
+                    parent.color = RED;
+                    rotateLeft(parent);
+                    sibling = parent.right;
+                }
+                if (colorOf(sibling.left) == BLACK && colorOf(sibling.right) == BLACK) {
+                    sibling.color = RED;
+                    node = parent;
+                } else {
+                    if (colorOf(sibling.right) == BLACK) {
+                        sibling.left.color = BLACK;
+                        sibling.color = RED;
+                        rotateRight(sibling);
+                        sibling = parent.right;
+                    }
+                    sibling.color = parent.color;
+                    parent.color = BLACK;
+                    sibling.right.color = BLACK;
+                    rotateLeft(parent);
+                    node = root;
+                }
+            } else {
+                Node<T> sibling = parent.left;
+                if (colorOf(sibling) == RED) {
+                    sibling.color = BLACK;
+                    parent.color = RED;
+                    rotateRight(parent);
+                    sibling = parent.left;
+                }
+                if (colorOf(sibling.right) == BLACK && colorOf(sibling.left) == BLACK) {
+                    sibling.color = RED;
+                    node = parent;
+                } else {
+                    if (colorOf(sibling.left) == BLACK) {
+                        sibling.right.color = BLACK;
+                        sibling.color = RED;
+                        rotateLeft(sibling);
+                        sibling = parent.left;
+                    }
+                    sibling.color = parent.color;
+                    parent.color = BLACK;
+                    sibling.left.color = BLACK;
+                    rotateRight(parent);
+                    node = root;
+                }
+            }
+        }
+        node.color = BLACK;
+    }
+
+    private void rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        pivot.parent = node.parent;
+        replaceChild(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        pivot.count = node.count;
+        node.count = countOf(node.left) + countOf(node.right) + 1;
+    }
+
+    private void rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        pivot.parent = node.parent;
+        replaceChild(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        pivot.count = node.count;
+        node.count = countOf(node.left) + countOf(node.right) + 1;
+    }
+
+    private int countOf(Node<T> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private boolean colorOf(Node<T> node) {
+        return node == null ? BLACK : node.color;
+    }
+}
@@ -0,0 +1,51 @@
+package datastructures;
+
+import java.util.Comparator;
+
+// Loads keys in increasing order, the case that turned the old unbalanced tree into a list,
+// and checks the height stays within the red-black bound. Run from the project root:
+//   java datastructures.BinarySearchTreeBenchmark [keys]
+public class BinarySearchTreeBenchmark {
+    private static final int DEFAULT_KEYS = 1_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEYS;
+        Comparator<Integer> comparator = Integer::compare;
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            BinarySearchTree<Integer> tree = new BinarySearchTree<>(comparator);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < keys; i++) {
+                tree.insert(i);
+            }
+            long insertNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < keys; i++) {
+                if (tree.search(i)) {
+                    found++;
+                }
+            }
+            long searchNanos = System.nanoTime() - start;
+
+            int height = tree.height();
+            start = System.nanoTime();
+            for (int i = 0; i < keys; i += 2) {
+                tree.delete(i);
+            }
+            long deleteNanos = System.nanoTime() - start;
+
+            int bound = (int) Math.floor(2 * Math.log(keys + 1) / Math.log(2));
+            System.out.printf("Round %d: %,d sequential inserts %.0f ms, searches %.0f ms, %,d deletes %.0f ms%n",
+                    round, keys, insertNanos / 1e6, searchNanos / 1e6, (keys + 1) / 2, deleteNanos / 1e6);
+            System.out.printf("         height %d (red-black bound %d), found %,d, %,d left%n",
+                    height, bound, found, tree.size());
+            if (height > bound || found != keys || tree.size() != keys / 2) {
+                throw new IllegalStateException("Tree invariants violated");
+            }
+        }
+    }
+}
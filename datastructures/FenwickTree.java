@@ -0,0 +1,128 @@
+package datastructures;
+
+import java.util.Arrays;
+
+// Binary indexed tree of counts over indexes base, base + 1, ... Point updates and prefix
+// sums are O(log n); the index range grows on demand by doubling, rebuilding the tree in O(n).
+// rebase() drops the indexes below a new base and shrinks the tree to the indexes still in
+// use, so a tree over ever-increasing indexes stays the size of the live window.
+public class FenwickTree {
+    private long[] tree; // 1-based, position i holds index base + i - 1
+    private int base;
+    private long total;
+
+    public FenwickTree() {
+        this(16);
+    }
+
+    public FenwickTree(int capacity) {
+        tree = new long[Math.max(capacity, 1) + 1];
+        base = 0;
+        total = 0;
+    }
+
+    public void add(int index, long delta) {
+        if (index < base) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Base: " + base);
+        }
+        if (index - base >= capacity()) {
+            grow(index - base + 1);
+        }
+        for (int i = index - base + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+        total += delta;
+    }
+
+    // Sum of the counts at indexes base..index inclusive
+    public long prefixSum(int index) {
+        if (index < base) {
+            return 0;
+        }
+        if (index - base >= capacity()) {
+            return total;
+        }
+        long sum = 0;
+        for (int i = index - base + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    public long get(int index) {
+        return prefixSum(index) - prefixSum(index - 1);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int base() {
+        return base;
+    }
+
+    public int capacity() {
+        return tree.length - 1;
+    }
+
+    // Discards the counts below newBase and sizes the tree to the highest index with a count, O(n)
+    public void rebase(int newBase) {
+        if (newBase <= base) {
+            return;
+        }
+        long[] counts = pointCounts();
+        int shift = (int) Math.min((long) newBase - base, counts.length - 1);
+        int used = 0;
+        for (int i = counts.length - 1; i > shift; i--) {
+            if (counts[i] != 0) {
+                used = i - shift;
+                break;
+            }
+        }
+        long dropped = 0;
+        for (int i = 1; i <= shift; i++) {
+            dropped += counts[i];
+        }
+
+        int capacity = 16;
+        while (capacity < used) {
+            capacity <<= 1;
+        }
+        long[] shifted = new long[capacity + 1];
+        System.arraycopy(counts, shift + 1, shifted, 1, used);
+        tree = build(shifted);
+        base = newBase;
+        total -= dropped;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = capacity();
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        tree = build(Arrays.copyOf(pointCounts(), capacity + 1));
+    }
+
+    // Undoes the bottom-up build to recover the count at each position
+    private long[] pointCounts() {
+        long[] counts = tree.clone();
+        for (int i = counts.length - 1; i > 0; i--) {
+            int parent = i + (i & -i);
+            if (parent < counts.length) {
+                counts[parent] -= counts[i];
+            }
+        }
+        return counts;
+    }
+
+    // Builds the tree in place over 1-based point counts
+    private static long[] build(long[] counts) {
+        for (int i = 1; i < counts.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < counts.length) {
+                counts[parent] += counts[i];
+            }
+        }
+        return counts;
+    }
+}
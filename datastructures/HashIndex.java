@@ -0,0 +1,154 @@
+package datastructures;
+
+// Open-addressing hash map with linear probing. Removed slots are marked with a
+// tombstone so probe chains stay intact; once live entries plus tombstones pass the
+// load factor the table is rehashed, doubling only when live entries alone need the room.
+public class HashIndex<K, V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private int tombstones;
+
+    public HashIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HashIndex(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        size = 0;
+        tombstones = 0;
+    }
+
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int mask = keys.length - 1;
+        int index = indexFor(key, mask);
+        int firstTombstone = -1;
+
+        while (keys[index] != null) {
+            if (keys[index] == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = index;
+                }
+            } else if (keys[index].equals(key)) {
+                V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        // Reuse the first tombstone on the probe path so chains stay short
+        if (firstTombstone >= 0) {
+            index = firstTombstone;
+            tombstones--;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        if (size + tombstones > keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return null;
+    }
+
+    public V get(K key) {
+        int index = find(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) >= 0;
+    }
+
+    public V remove(K key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = valueAt(index);
+        keys[index] = TOMBSTONE;
+        values[index] = null;
+        size--;
+        tombstones++;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        keys = new Object[DEFAULT_CAPACITY];
+        values = new Object[DEFAULT_CAPACITY];
+        size = 0;
+        tombstones = 0;
+    }
+
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        int index = indexFor(key, mask);
+        while (keys[index] != null) {
+            if (keys[index] != TOMBSTONE && keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        int capacity = keys.length;
+        if (size > capacity * LOAD_FACTOR / 2) {
+            capacity <<= 1;
+        }
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        tombstones = 0;
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null && key != TOMBSTONE) {
+                int index = indexFor(key, mask);
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int indexFor(Object key, int mask) {
+        // Fibonacci hashing spreads clustered hash codes such as sequential IDs
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+}
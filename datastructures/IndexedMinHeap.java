@@ -0,0 +1,203 @@
+package datastructures;
+
+import java.util.Arrays;
+
+// Binary min-heap of values identified by int keys and ordered by long priorities.
+// Each key maps through an IntHashIndex to a one-element holder of its heap slot, and
+// the heap also keeps the holders by slot, so sifting rewrites them without hashing.
+// Update and remove by key are O(log n) in memory proportional to the entries queued,
+// not to the largest key ever seen. forEachBelow() prunes at the first slot whose
+// priority is too large, so collecting the k entries under a bound costs O(k) rather
+// than a scan of the whole heap.
+public class IndexedMinHeap<T> {
+    private int[] keys;
+    private long[] priorities;
+    private Object[] values;
+    private int[][] handles; // by slot, the {slot} holder its key maps to
+    private IntHashIndex<int[]> slots; // key -> {slot}
+    private int size;
+
+    public interface EntryConsumer<T> {
+        void accept(int key, long priority, T value);
+    }
+
+    public IndexedMinHeap() {
+        keys = new int[16];
+        priorities = new long[16];
+        values = new Object[16];
+        handles = new int[16][];
+        slots = new IntHashIndex<>();
+        size = 0;
+    }
+
+    // Inserts the key, or moves it to the new priority if it is already queued
+    public void put(int key, long priority, T value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            long previous = priorities[slot];
+            priorities[slot] = priority;
+            values[slot] = value;
+            if (priority < previous) {
+                siftUp(slot);
+            } else {
+                siftDown(slot);
+            }
+            return;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            handles = Arrays.copyOf(handles, size * 2);
+        }
+        int[] handle = {size};
+        keys[size] = key;
+        priorities[size] = priority;
+        values[size] = value;
+        handles[size] = handle;
+        slots.put(key, handle);
+        siftUp(size++);
+    }
+
+    public T remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        T value = valueAt(slot);
+        slots.remove(key);
+        size--;
+        if (slot < size) {
+            move(size, slot);
+            siftDown(slot);
+            siftUp(slot);
+        }
+        values[size] = null;
+        handles[size] = null;
+        return value;
+    }
+
+    public boolean contains(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    public T get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    public T peek() {
+        checkNotEmpty();
+        return valueAt(0);
+    }
+
+    public int peekKey() {
+        checkNotEmpty();
+        return keys[0];
+    }
+
+    public long peekPriority() {
+        checkNotEmpty();
+        return priorities[0];
+    }
+
+    public T poll() {
+        checkNotEmpty();
+        return remove(keys[0]);
+    }
+
+    // Visits every entry with a priority strictly below the bound, in no particular order
+    public void forEachBelow(long bound, EntryConsumer<? super T> action) {
+        if (size == 0 || priorities[0] >= bound) {
+            return;
+        }
+        IntList pending = new IntList();
+        pending.add(0);
+        while (!pending.isEmpty()) {
+            int slot = pending.get(pending.size() - 1);
+            pending.removeAt(pending.size() - 1);
+            action.accept(keys[slot], priorities[slot], valueAt(slot));
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                if (priorities[child] < bound) {
+                    pending.add(child);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int slotOf(int key) {
+        int[] handle = slots.get(key);
+        return handle == null ? -1 : handle[0];
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (priorities[parent] <= priorities[slot]) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int smallest = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && priorities[left] < priorities[smallest]) {
+                smallest = left;
+            }
+            if (right < size && priorities[right] < priorities[smallest]) {
+                smallest = right;
+            }
+            if (smallest == slot) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int key = keys[a];
+        long priority = priorities[a];
+        Object value = values[a];
+        int[] handle = handles[a];
+        move(b, a);
+        keys[b] = key;
+        priorities[b] = priority;
+        values[b] = value;
+        handles[b] = handle;
+        handle[0] = b;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        priorities[to] = priorities[from];
+        values[to] = values[from];
+        handles[to] = handles[from];
+        handles[to][0] = to;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T valueAt(int slot) {
+        return (T) values[slot];
+    }
+}
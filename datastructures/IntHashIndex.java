@@ -0,0 +1,161 @@
+package datastructures;
+
+// Open-addressing hash map specialised for primitive int keys, so lookups neither box
+// the key nor call hashCode/equals. Same probing and tombstone scheme as HashIndex;
+// values must not be null because an empty value slot marks an unused entry.
+public class IntHashIndex<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int tombstones;
+
+    public IntHashIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntHashIndex(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+        tombstones = 0;
+    }
+
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int mask = keys.length - 1;
+        int index = indexFor(key, mask);
+        int firstTombstone = -1;
+
+        while (values[index] != null) {
+            if (values[index] == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = index;
+                }
+            } else if (keys[index] == key) {
+                V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if (firstTombstone >= 0) {
+            index = firstTombstone;
+            tombstones--;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        if (size + tombstones > keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return null;
+    }
+
+    public V get(int key) {
+        int index = find(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    public V remove(int key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = valueAt(index);
+        values[index] = TOMBSTONE;
+        size--;
+        tombstones++;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            Object value = values[i];
+            if (value != null && value != TOMBSTONE) {
+                action.accept(keys[i], valueAt(i));
+            }
+        }
+    }
+
+    public void clear() {
+        keys = new int[DEFAULT_CAPACITY];
+        values = new Object[DEFAULT_CAPACITY];
+        size = 0;
+        tombstones = 0;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int index = indexFor(key, mask);
+        while (values[index] != null) {
+            if (values[index] != TOMBSTONE && keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        int capacity = keys.length;
+        if (size > capacity * LOAD_FACTOR / 2) {
+            capacity <<= 1;
+        }
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        tombstones = 0;
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object value = oldValues[i];
+            if (value != null && value != TOMBSTONE) {
+                int index = indexFor(oldKeys[i], mask);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = value;
+            }
+        }
+    }
+
+    private static int indexFor(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+}
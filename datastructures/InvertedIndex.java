@@ -0,0 +1,315 @@
+package datastructures;
+
+import utils.TextNormalizer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Term -> compressed posting list index over small documents identified by int keys.
+// AND queries leapfrog the posting cursors from the rarest term, skipping whole blocks;
+// OR queries merge every cursor. Both rank matches with BM25. The last word of a query
+// is treated as a prefix, so results keep up while a word is still being typed.
+public class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int[] NO_RESULTS = new int[0];
+    // A short prefix can start thousands of terms; the most common ones stand in for it
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final HashIndex<String, PostingList> postings;
+    private final BinarySearchTree<String> terms; // every indexed term in order, for prefix expansion
+    private int[] documentLengths; // length + 1 by key, 0 when the key is not indexed
+    private int documentCount;
+    private long totalLength;
+
+    public InvertedIndex() {
+        postings = new HashIndex<>();
+        terms = new BinarySearchTree<>(String::compareTo);
+        documentLengths = new int[16];
+        documentCount = 0;
+        totalLength = 0;
+    }
+
+    public void add(int key, String text) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Keys must be non-negative");
+        }
+        if (key < documentLengths.length && documentLengths[key] != 0) {
+            throw new IllegalStateException("Key already indexed: " + key);
+        }
+        String[] tokens = TextNormalizer.tokenizeAll(text);
+        Arrays.sort(tokens);
+        for (int start = 0, end; start < tokens.length; start = end) {
+            end = start + 1;
+            while (end < tokens.length && tokens[end].equals(tokens[start])) {
+                end++;
+            }
+            PostingList list = postings.get(tokens[start]);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(tokens[start], list);
+                terms.insert(tokens[start]);
+            }
+            list.add(key, end - start);
+        }
+
+        if (key >= documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, Math.max(documentLengths.length * 2, key + 1));
+        }
+        documentLengths[key] = tokens.length + 1;
+        documentCount++;
+        totalLength += tokens.length;
+    }
+
+    // The text must be the same as when the key was added
+    public void remove(int key, String text) {
+        if (key < 0 || key >= documentLengths.length || documentLengths[key] == 0) {
+            return;
+        }
+        for (String token : TextNormalizer.tokenize(text)) {
+            PostingList list = postings.get(token);
+            if (list != null && list.remove(key) && list.isEmpty()) {
+                postings.remove(token);
+                terms.delete(token);
+            }
+        }
+        totalLength -= documentLengths[key] - 1;
+        documentLengths[key] = 0;
+        documentCount--;
+    }
+
+    public int documentFrequency(String term) {
+        PostingList list = postings.get(TextNormalizer.normalize(term));
+        return list == null ? 0 : list.size();
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    public int documentCount() {
+        return documentCount;
+    }
+
+    // Keys containing every query word, best match first ("harper mock" finds "To Kill a
+    // Mockingbird" by Harper Lee)
+    public int[] searchAll(String query) {
+        Clause[] clauses = clauses(query);
+        if (clauses.length == 0) {
+            return NO_RESULTS;
+        }
+        for (Clause clause : clauses) {
+            if (clause == null) {
+                return NO_RESULTS;
+            }
+        }
+        // Rarest word first keeps the leapfrog short
+        Arrays.sort(clauses, (a, b) -> Long.compare(a.postingCount, b.postingCount));
+
+        Scores scores = new Scores();
+        if (!clauses[0].advance(0)) {
+            return NO_RESULTS;
+        }
+        int target = clauses[0].key;
+        int i = 1;
+        while (true) {
+            if (i == clauses.length) {
+                double score = 0;
+                for (Clause clause : clauses) {
+                    score += clause.score();
+                }
+                scores.add(target, score);
+                if (!clauses[0].next()) {
+                    break;
+                }
+                target = clauses[0].key;
+                i = 1;
+                continue;
+            }
+            if (!clauses[i].advance(target)) {
+                break;
+            }
+            if (clauses[i].key == target) {
+                i++;
+            } else {
+                if (!clauses[0].advance(clauses[i].key)) {
+                    break;
+                }
+                target = clauses[0].key;
+                i = 1;
+            }
+        }
+        return scores.ranked();
+    }
+
+    // Keys containing at least one query word, best match first. Merges the clause cursors
+    // in key order, so the work and memory follow the postings the query touches rather
+    // than the whole key space.
+    public int[] searchAny(String query) {
+        Clause[] live = clauses(query);
+        int count = 0;
+        for (Clause clause : live) {
+            if (clause != null && clause.advance(0)) {
+                live[count++] = clause;
+            }
+        }
+
+        Scores scores = new Scores();
+        while (count > 0) {
+            int key = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                key = Math.min(key, live[i].key);
+            }
+            double score = 0;
+            for (int i = 0; i < count; i++) {
+                if (live[i].key == key) {
+                    score += live[i].score();
+                    if (!live[i].next()) {
+                        live[i--] = live[--count];
+                    }
+                }
+            }
+            scores.add(key, score);
+        }
+        return scores.ranked();
+    }
+
+    // One clause per distinct query word, null for a word nothing matches. The word typed
+    // last is the one that may be unfinished, so it alone is expanded as a prefix.
+    private Clause[] clauses(String query) {
+        String[] words = TextNormalizer.tokenizeAll(query);
+        if (words.length == 0) {
+            return new Clause[0];
+        }
+        Clause[] clauses = new Clause[words.length];
+        int count = 0;
+        for (int i = 0; i < words.length - 1; i++) {
+            if (indexOf(words, i, words[i]) >= 0) {
+                continue;
+            }
+            PostingList list = postings.get(words[i]);
+            clauses[count++] = list == null ? null : new Clause(new PostingList[] {list});
+        }
+        clauses[count++] = prefixClause(words[words.length - 1]);
+        return Arrays.copyOf(clauses, count);
+    }
+
+    private static int indexOf(String[] words, int end, String word) {
+        for (int i = 0; i < end; i++) {
+            if (words[i].equals(word)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Every term starting with the prefix, the term itself included
+    private Clause prefixClause(String prefix) {
+        LinkedList<PostingList> lists = new LinkedList<>();
+        Iterator<String> expansions = terms.rangeIterator(prefix, prefix + Character.MAX_VALUE);
+        while (expansions.hasNext()) {
+            lists.add(postings.get(expansions.next()));
+        }
+        if (lists.isEmpty()) {
+            return null;
+        }
+
+        PostingList[] expanded = new PostingList[lists.size()];
+        int count = 0;
+        for (PostingList list : lists) {
+            expanded[count++] = list;
+        }
+        if (count > MAX_PREFIX_EXPANSIONS) {
+            Arrays.sort(expanded, (a, b) -> Integer.compare(b.size(), a.size()));
+            expanded = Arrays.copyOf(expanded, MAX_PREFIX_EXPANSIONS);
+        }
+        return new Clause(expanded);
+    }
+
+    // The postings of one query word: a single term, or the union of the terms a prefix
+    // expands to. Each key scores as its best-matching term, so a document is not
+    // rewarded just for containing several words that share the prefix.
+    private final class Clause {
+        private final PostingList.Cursor[] cursors;
+        private final double[] idf;
+        private final int[] keys; // each cursor's current key; MAX_VALUE once it runs out
+        private final long postingCount;
+        private int key;
+
+        Clause(PostingList[] lists) {
+            cursors = new PostingList.Cursor[lists.length];
+            idf = new double[lists.length];
+            keys = new int[lists.length];
+            long count = 0;
+            for (int i = 0; i < lists.length; i++) {
+                cursors[i] = lists[i].cursor();
+                idf[i] = idf(lists[i].size());
+                keys[i] = -1;
+                count += lists[i].size();
+            }
+            postingCount = count;
+            key = -1;
+        }
+
+        // Moves to the first key of at least target; false when every list has run out
+        boolean advance(int target) {
+            int smallest = Integer.MAX_VALUE;
+            for (int i = 0; i < cursors.length; i++) {
+                if (keys[i] < target) {
+                    keys[i] = cursors[i].advance(target) ? cursors[i].key() : Integer.MAX_VALUE;
+                }
+                smallest = Math.min(smallest, keys[i]);
+            }
+            key = smallest;
+            return smallest != Integer.MAX_VALUE;
+        }
+
+        boolean next() {
+            return advance(key + 1);
+        }
+
+        double score() {
+            double best = 0;
+            for (int i = 0; i < cursors.length; i++) {
+                if (keys[i] == key) {
+                    best = Math.max(best, termScore(idf[i], cursors[i].frequency(), key));
+                }
+            }
+            return best;
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double termScore(double idf, int frequency, int key) {
+        double averageLength = documentCount == 0 ? 1 : (double) totalLength / documentCount;
+        double length = documentLengths[key] - 1;
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    // Collects (key, score) pairs packed into longs so ranking is a single primitive sort
+    private static class Scores {
+        private long[] packed = new long[16];
+        private int count = 0;
+
+        void add(int key, double score) {
+            if (count == packed.length) {
+                packed = Arrays.copyOf(packed, count * 2);
+            }
+            // Non-negative float bits order like the floats; the low half breaks ties by smaller key
+            long bits = Float.floatToIntBits((float) Math.max(score, 0));
+            packed[count++] = (bits << 32) | (0xFFFFFFFFL - key);
+        }
+
+        int[] ranked() {
+            Arrays.sort(packed, 0, count);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (int) (0xFFFFFFFFL - (packed[count - 1 - i] & 0xFFFFFFFFL));
+            }
+            return keys;
+        }
+    }
+}
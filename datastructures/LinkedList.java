@@ -1,8 +1,26 @@
 package datastructures;
 
-public class LinkedList<T> {
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class LinkedList<T> implements Iterable<T> {
+    // Lists at least this long are sorted on the common fork/join pool
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
     private Node<T> head;
+    private Node<T> tail;
     private int size;
+    private int modCount;
 
     private static class Node<T> {
         T data;
@@ -16,6 +34,7 @@ public class LinkedList<T> {
 
     public LinkedList() {
         head = null;
+        tail = null;
         size = 0;
     }
 
@@ -24,13 +43,11 @@ public class LinkedList<T> {
         if (head == null) {
             head = newNode;
         } else {
-            Node<T> current = head;
-            while (current.next != null) {
-                current = current.next;
-            }
-            current.next = newNode;
+            tail.next = newNode;
         }
+        tail = newNode;
         size++;
+        modCount++;
     }
 
     public boolean remove(T data) {
@@ -39,8 +56,7 @@ public class LinkedList<T> {
         }
 
         if (head.data.equals(data)) {
-            head = head.next;
-            size--;
+            unlink(null, head);
             return true;
         }
 
@@ -50,13 +66,25 @@ public class LinkedList<T> {
         }
 
         if (current.next != null) {
-            current.next = current.next.next;
-            size--;
+            unlink(current, current.next);
             return true;
         }
         return false;
     }
 
+    private void unlink(Node<T> previous, Node<T> node) {
+        if (previous == null) {
+            head = node.next;
+        } else {
+            previous.next = node.next;
+        }
+        if (node == tail) {
+            tail = previous;
+        }
+        size--;
+        modCount++;
+    }
+
     public T get(int index) {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
@@ -90,6 +118,273 @@ public class LinkedList<T> {
 
     public void clear() {
         head = null;
+        tail = null;
         size = 0;
+        modCount++;
+    }
+
+    // Stable merge sort that relinks the existing nodes rather than copying elements
+    public void sort(Comparator<? super T> comparator) {
+        if (size < 2) {
+            return;
+        }
+        if (size >= PARALLEL_SORT_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            head = ForkJoinPool.commonPool().invoke(new SortTask<>(head, size, comparator));
+        } else {
+            head = mergeSort(head, size, comparator);
+        }
+        Node<T> last = head;
+        while (last.next != null) {
+            last = last.next;
+        }
+        tail = last;
+        modCount++;
+    }
+
+    // Bottom-up: merges runs of width 1, 2, 4, ... in place, so no recursion and no extra nodes
+    private static <T> Node<T> mergeSort(Node<T> first, int length, Comparator<? super T> comparator) {
+        Node<T> sentinel = new Node<>(null);
+        sentinel.next = first;
+        for (int width = 1; width < length; width <<= 1) {
+            Node<T> merged = sentinel;
+            Node<T> rest = sentinel.next;
+            while (rest != null) {
+                Node<T> left = rest;
+                Node<T> right = split(left, width);
+                rest = split(right, width);
+                merged = merge(left, right, merged, comparator);
+            }
+        }
+        return sentinel.next;
+    }
+
+    // Cuts the chain after count nodes and returns the remainder
+    private static <T> Node<T> split(Node<T> node, int count) {
+        for (int i = 1; node != null && i < count; i++) {
+            node = node.next;
+        }
+        if (node == null) {
+            return null;
+        }
+        Node<T> rest = node.next;
+        node.next = null;
+        return rest;
+    }
+
+    // Links the merge of two sorted chains after last and returns the new last node.
+    // Ties take the left node first, which keeps the sort stable.
+    private static <T> Node<T> merge(Node<T> left, Node<T> right, Node<T> last, Comparator<? super T> comparator) {
+        while (left != null && right != null) {
+            if (comparator.compare(right.data, left.data) < 0) {
+                last.next = right;
+                right = right.next;
+            } else {
+                last.next = left;
+                left = left.next;
+            }
+            last = last.next;
+        }
+        last.next = left != null ? left : right;
+        while (last.next != null) {
+            last = last.next;
+        }
+        return last;
+    }
+
+    // Sorts the two halves of a chain in parallel and merges them
+    private static class SortTask<T> extends RecursiveTask<Node<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Node<T> first;
+        private final int length;
+        private final Comparator<? super T> comparator;
+
+        SortTask(Node<T> first, int length, Comparator<? super T> comparator) {
+            this.first = first;
+            this.length = length;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected Node<T> compute() {
+            if (length < PARALLEL_SORT_THRESHOLD) {
+                return mergeSort(first, length, comparator);
+            }
+            int leftLength = length / 2;
+            Node<T> rightFirst = split(first, leftLength);
+            SortTask<T> left = new SortTask<>(first, leftLength, comparator);
+            left.fork();
+            Node<T> right = new SortTask<>(rightFirst, length - leftLength, comparator).compute();
+
+            Node<T> sentinel = new Node<>(null);
+            merge(left.join(), right, sentinel, comparator);
+            return sentinel.next;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new ListIterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ListSpliterator(head, size, modCount);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Collects a stream into a LinkedList, e.g. stream.collect(LinkedList.collector())
+    public static <T> Collector<T, ?, LinkedList<T>> collector() {
+        return Collector.of(LinkedList::new, LinkedList::add, LinkedList::splice);
+    }
+
+    // Moves the other list's nodes onto the end of this one in O(1); the other list is consumed
+    private LinkedList<T> splice(LinkedList<T> other) {
+        if (other.head == null) {
+            return this;
+        }
+        if (head == null) {
+            head = other.head;
+        } else {
+            tail.next = other.head;
+        }
+        tail = other.tail;
+        size += other.size;
+        modCount++;
+        return this;
+    }
+
+    private class ListIterator implements Iterator<T> {
+        private Node<T> next = head;
+        private Node<T> lastReturned;
+        private Node<T> beforeLastReturned;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            checkForComodification();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            // After a remove() lastReturned is null and the predecessor stays put
+            if (lastReturned != null) {
+                beforeLastReturned = lastReturned;
+            }
+            lastReturned = next;
+            next = next.next;
+            return lastReturned.data;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            unlink(beforeLastReturned, lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // Splits by copying batches of nodes into arrays, in the same way as java.util.LinkedList,
+    // since a singly linked chain cannot be divided without walking it.
+    private class ListSpliterator implements Spliterator<T> {
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private Node<T> current;
+        private int remaining;
+        private int batch;
+        private final int expectedModCount;
+
+        ListSpliterator(Node<T> origin, int remaining, int expectedModCount) {
+            this.current = origin;
+            this.remaining = remaining;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (remaining <= 0 || current == null) {
+                return false;
+            }
+            T data = current.data;
+            current = current.next;
+            remaining--;
+            action.accept(data);
+            checkForComodification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            Node<T> node = current;
+            int count = remaining;
+            current = null;
+            remaining = 0;
+            while (node != null && count-- > 0) {
+                action.accept(node.data);
+                node = node.next;
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (remaining <= 1 || current == null) {
+                return null;
+            }
+            int n = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] array = new Object[n];
+            int j = 0;
+            do {
+                array[j++] = current.data;
+                current = current.next;
+            } while (current != null && j < n);
+            batch = j;
+            remaining -= j;
+            return Spliterators.spliterator(array, 0, j, Spliterator.ORDERED);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,298 @@
+package datastructures;
+
+import java.util.Arrays;
+
+// Sorted (key, term frequency) postings split into blocks. Each block keeps its first key
+// in the clear and its entries as varint-encoded key deltas, so a cursor can jump over
+// whole blocks while intersecting with a shorter list. Keys arriving in increasing order
+// are appended to the last block; an add or remove anywhere else decodes and re-encodes
+// only the block the key falls in, so editing a document costs O(log n) per term rather
+// than a rebuild of every list it appears in.
+public class PostingList {
+    private static final int BLOCK_SIZE = 32; // entries per block filled by appends
+    private static final int MAX_BLOCK_SIZE = 2 * BLOCK_SIZE; // a block past this is split in two
+
+    private Block[] blocks;
+    private int blockCount;
+    private int size;
+    private int length; // encoded bytes over all blocks
+
+    private static final class Block {
+        int firstKey;
+        int lastKey;
+        int count;
+        byte[] bytes; // (key delta, frequency) per entry; the first delta is 0
+        int length;
+
+        Block(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void append(int key, int frequency) {
+            if (count == 0) {
+                firstKey = key;
+                lastKey = key;
+            }
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 10));
+            }
+            length = writeVarint(bytes, length, key - lastKey);
+            length = writeVarint(bytes, length, frequency);
+            lastKey = key;
+            count++;
+        }
+    }
+
+    public PostingList() {
+        blocks = new Block[4];
+        blockCount = 0;
+        size = 0;
+        length = 0;
+    }
+
+    public void add(int key, int frequency) {
+        if (key < 0 || frequency <= 0) {
+            throw new IllegalArgumentException("Keys must be non-negative and frequencies positive");
+        }
+        Block last = blockCount == 0 ? null : blocks[blockCount - 1];
+        if (last == null || key > last.lastKey) {
+            if (last == null || last.count == BLOCK_SIZE) {
+                last = new Block(16);
+                insertBlock(blockCount, last);
+            }
+            length -= last.length;
+            last.append(key, frequency);
+            length += last.length;
+            size++;
+            return;
+        }
+
+        int index = blockFor(key);
+        Block block = blocks[index];
+        int[] keys = new int[block.count + 1];
+        int[] frequencies = new int[block.count + 1];
+        decode(block, keys, frequencies);
+
+        int position = Arrays.binarySearch(keys, 0, block.count, key);
+        int count = block.count;
+        if (position >= 0) {
+            frequencies[position] = frequency;
+        } else {
+            position = -(position + 1);
+            System.arraycopy(keys, position, keys, position + 1, count - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, count - position);
+            keys[position] = key;
+            frequencies[position] = frequency;
+            count++;
+            size++;
+        }
+
+        if (count <= MAX_BLOCK_SIZE) {
+            encode(block, keys, frequencies, 0, count);
+            return;
+        }
+        // Split the overfull block in two
+        int half = count / 2;
+        Block upper = new Block(block.bytes.length);
+        encode(block, keys, frequencies, 0, half);
+        encode(upper, keys, frequencies, half, count);
+        insertBlock(index + 1, upper);
+    }
+
+    public boolean remove(int key) {
+        if (blockCount == 0 || key > blocks[blockCount - 1].lastKey || key < blocks[0].firstKey) {
+            return false;
+        }
+        int index = blockFor(key);
+        Block block = blocks[index];
+        if (key > block.lastKey) {
+            return false;
+        }
+        int[] keys = new int[block.count];
+        int[] frequencies = new int[block.count];
+        decode(block, keys, frequencies);
+        int position = Arrays.binarySearch(keys, key);
+        if (position < 0) {
+            return false;
+        }
+
+        size--;
+        int count = block.count - 1;
+        if (count == 0) {
+            length -= block.length;
+            System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+            blocks[--blockCount] = null;
+            return true;
+        }
+        System.arraycopy(keys, position + 1, keys, position, count - position);
+        System.arraycopy(frequencies, position + 1, frequencies, position, count - position);
+        encode(block, keys, frequencies, 0, count);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int sizeInBytes() {
+        return length;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Last block whose first key is at most the key, or the first block
+    private int blockFor(int key) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks[middle].firstKey <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void insertBlock(int index, Block block) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+        }
+        System.arraycopy(blocks, index, blocks, index + 1, blockCount - index);
+        blocks[index] = block;
+        blockCount++;
+    }
+
+    private static void decode(Block block, int[] keys, int[] frequencies) {
+        int offset = 0;
+        int key = block.firstKey;
+        for (int i = 0; i < block.count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = block.bytes[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            key += value;
+
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = block.bytes[offset++];
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            keys[i] = key;
+            frequencies[i] = frequency;
+        }
+    }
+
+    // Replaces the block's contents with entries [from, to)
+    private void encode(Block block, int[] keys, int[] frequencies, int from, int to) {
+        length -= block.length;
+        block.count = 0;
+        block.length = 0;
+        for (int i = from; i < to; i++) {
+            block.append(keys[i], frequencies[i]);
+        }
+        length += block.length;
+    }
+
+    private static int writeVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    // Forward-only reader; not valid across modifications of the list
+    public class Cursor {
+        private int block;
+        private int position; // entries read from the current block
+        private int offset;
+        private int key;
+        private int frequency;
+        private boolean started;
+
+        private Cursor() {
+            block = 0;
+            position = 0;
+            offset = 0;
+            key = 0;
+            frequency = 0;
+            started = false;
+        }
+
+        public boolean next() {
+            while (block < blockCount && position == blocks[block].count) {
+                block++;
+                position = 0;
+                offset = 0;
+            }
+            if (block == blockCount) {
+                return false;
+            }
+            Block current = blocks[block];
+            int delta = readVarint(current.bytes);
+            key = position == 0 ? current.firstKey : key + delta;
+            frequency = readVarint(current.bytes);
+            position++;
+            started = true;
+            return true;
+        }
+
+        // Moves to the first entry with a key of at least target; false when the list runs out
+        public boolean advance(int target) {
+            if (started && key >= target) {
+                return true;
+            }
+            // Skip every later block that starts no later than the target
+            int skipTo = block;
+            while (skipTo + 1 < blockCount && blocks[skipTo + 1].firstKey <= target) {
+                skipTo++;
+            }
+            if (skipTo > block) {
+                block = skipTo;
+                position = 0;
+                offset = 0;
+            }
+            while (next()) {
+                if (key >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int key() {
+            return key;
+        }
+
+        public int frequency() {
+            return frequency;
+        }
+
+        private int readVarint(byte[] bytes) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -1,47 +1,63 @@
 package datastructures;
 
-public class Queue<T> {
-    private Node<T> front;
-    private Node<T> rear;
-    private int size;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-    private static class Node<T> {
-        T data;
-        Node<T> next;
+// Growable circular-array FIFO queue. Every enqueued element gets a ticket (its enqueue
+// sequence number) that can later cancel it in place: the slot becomes a tombstone and
+// is skipped by reads, and the array is compacted once tombstones make up half of it.
+// Tickets stay in ascending order around the ring, so a ticket is found at its direct
+// offset from the head until a compaction shifts it, and by binary search after that.
+public class Queue<T> implements Iterable<T> {
+    private static final int DEFAULT_CAPACITY = 8;
 
-        Node(T data) {
-            this.data = data;
-            this.next = null;
-        }
-    }
+    private Object[] elements;
+    private int[] tickets;
+    private int head;
+    private int count; // occupied slots from head, tombstones included
+    private int size;
+    private int nextTicket;
+    private int modCount;
 
     public Queue() {
-        front = null;
-        rear = null;
+        elements = new Object[DEFAULT_CAPACITY];
+        tickets = new int[DEFAULT_CAPACITY];
+        head = 0;
+        count = 0;
         size = 0;
+        nextTicket = 0;
+        modCount = 0;
     }
 
-    public void enqueue(T data) {
-        Node<T> newNode = new Node<>(data);
-        if (isEmpty()) {
-            front = newNode;
-        } else {
-            rear.next = newNode;
+    // Returns the ticket that identifies this element for cancel()
+    public int enqueue(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Queue elements cannot be null");
+        }
+        if (count == elements.length) {
+            resize(elements.length * 2);
         }
-        rear = newNode;
+        int slot = slot(count);
+        elements[slot] = data;
+        tickets[slot] = nextTicket;
+        count++;
         size++;
+        modCount++;
+        return nextTicket++;
     }
 
     public T dequeue() {
         if (isEmpty()) {
             throw new IllegalStateException("Queue is empty");
         }
-        T data = front.data;
-        front = front.next;
-        if (front == null) {
-            rear = null;
-        }
+        T data = elementAt(head);
+        elements[head] = null;
+        head = slot(1);
+        count--;
         size--;
+        modCount++;
+        trim();
         return data;
     }
 
@@ -49,11 +65,53 @@ public class Queue<T> {
         if (isEmpty()) {
             throw new IllegalStateException("Queue is empty");
         }
-        return front.data;
+        return elementAt(head);
+    }
+
+    // Removes the element enqueued under this ticket; false if it already left the queue
+    public boolean cancel(int ticket) {
+        int index = indexOfTicket(ticket);
+        if (index < 0) {
+            return false;
+        }
+        int slot = slot(index);
+        if (elements[slot] == null) {
+            return false;
+        }
+        elements[slot] = null;
+        size--;
+        modCount++;
+        trim();
+        if (count >= DEFAULT_CAPACITY && count - size > count / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    // Ticket of the front element, or the next ticket to be handed out when the queue is empty.
+    // No element still waiting has a lower ticket.
+    public int firstTicket() {
+        return count == 0 ? nextTicket : tickets[head];
+    }
+
+    // The element at this position from the front, 0-based
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (count == size) {
+            return elementAt(slot(index));
+        }
+        for (int i = 0; ; i++) {
+            Object element = elements[slot(i)];
+            if (element != null && index-- == 0) {
+                return elementAt(slot(i));
+            }
+        }
     }
 
     public boolean isEmpty() {
-        return front == null;
+        return size == 0;
     }
 
     public int size() {
@@ -61,8 +119,129 @@ public class Queue<T> {
     }
 
     public void clear() {
-        front = null;
-        rear = null;
+        elements = new Object[DEFAULT_CAPACITY];
+        tickets = new int[DEFAULT_CAPACITY];
+        head = 0;
+        count = 0;
         size = 0;
+        modCount++;
+    }
+
+    // Front-to-back view that leaves the queue untouched; fails fast on concurrent changes
+    @Override
+    public Iterator<T> iterator() {
+        return new QueueIterator();
+    }
+
+    private class QueueIterator implements Iterator<T> {
+        private int index;
+        private final int expectedModCount;
+
+        QueueIterator() {
+            index = 0;
+            expectedModCount = modCount;
+            skipTombstones();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+            T data = elementAt(slot(index++));
+            skipTombstones();
+            return data;
+        }
+
+        private void skipTombstones() {
+            while (index < count && elements[slot(index)] == null) {
+                index++;
+            }
+        }
+    }
+
+    private int indexOfTicket(int ticket) {
+        if (count == 0) {
+            return -1;
+        }
+        // Direct offset holds until a compaction closes gaps before this ticket
+        int offset = ticket - tickets[head];
+        if (offset >= 0 && offset < count && tickets[slot(offset)] == ticket) {
+            return offset;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midTicket = tickets[slot(mid)];
+            if (midTicket < ticket) {
+                low = mid + 1;
+            } else if (midTicket > ticket) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Keeps both ends on live elements so peek and enqueue never see a tombstone
+    private void trim() {
+        while (count > 0 && elements[head] == null) {
+            head = slot(1);
+            count--;
+        }
+        while (count > 0 && elements[slot(count - 1)] == null) {
+            count--;
+        }
+        if (count == 0) {
+            head = 0;
+        }
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            int from = slot(i);
+            if (elements[from] != null) {
+                int to = slot(live++);
+                elements[to] = elements[from];
+                tickets[to] = tickets[from];
+            }
+        }
+        for (int i = live; i < count; i++) {
+            elements[slot(i)] = null;
+        }
+        count = live;
+    }
+
+    private void resize(int capacity) {
+        Object[] grownElements = new Object[capacity];
+        int[] grownTickets = new int[capacity];
+        for (int i = 0; i < count; i++) {
+            grownElements[i] = elements[slot(i)];
+            grownTickets[i] = tickets[slot(i)];
+        }
+        elements = grownElements;
+        tickets = grownTickets;
+        head = 0;
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return slot >= elements.length ? slot - elements.length : slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int slot) {
+        return (T) elements[slot];
     }
-} 
\ No newline at end of file
+}
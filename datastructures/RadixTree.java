@@ -0,0 +1,288 @@
+package datastructures;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+// Compressed trie mapping terms to posting lists of entity keys. Edges carry whole
+// label runs, so a lookup touches one node per branching point of the prefix. Each
+// node also records the largest posting list below it, which lets suggest() visit the
+// most frequent terms first instead of walking the whole subtree.
+public class RadixTree {
+    private final Node root;
+    private int termCount;
+
+    private static class Node {
+        String label;
+        Node parent;
+        Node[] children;
+        int childCount;
+        String term;
+        IntList postings;
+        int maxWeight;
+
+        Node(String label, Node parent) {
+            this.label = label;
+            this.parent = parent;
+            this.children = null;
+            this.childCount = 0;
+        }
+
+        int weight() {
+            return postings == null ? 0 : postings.size();
+        }
+
+        Node child(char first) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].label.charAt(0) == first) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node child) {
+            if (children == null) {
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                Node[] grown = new Node[childCount * 2];
+                System.arraycopy(children, 0, grown, 0, childCount);
+                children = grown;
+            }
+            children[childCount++] = child;
+            child.parent = this;
+        }
+
+        void replaceChild(Node oldChild, Node newChild) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i] == oldChild) {
+                    children[i] = newChild;
+                    newChild.parent = this;
+                    return;
+                }
+            }
+        }
+
+        void removeChild(Node child) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i] == child) {
+                    children[i] = children[--childCount];
+                    children[childCount] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Candidate {
+        final Node node;
+        final int weight;
+        final boolean terminal;
+
+        Candidate(Node node, int weight, boolean terminal) {
+            this.node = node;
+            this.weight = weight;
+            this.terminal = terminal;
+        }
+    }
+
+    public RadixTree() {
+        root = new Node("", null);
+        termCount = 0;
+    }
+
+    public void add(String term, int key) {
+        if (term == null || term.isEmpty()) {
+            return;
+        }
+        Node node = root;
+        int position = 0;
+
+        while (position < term.length()) {
+            Node child = node.child(term.charAt(position));
+            if (child == null) {
+                Node leaf = new Node(term.substring(position), node);
+                node.addChild(leaf);
+                node = leaf;
+                break;
+            }
+
+            int common = commonPrefixLength(child.label, term, position);
+            if (common < child.label.length()) {
+                // Split the edge so the shared part becomes its own node
+                Node middle = new Node(child.label.substring(0, common), node);
+                node.replaceChild(child, middle);
+                child.label = child.label.substring(common);
+                middle.addChild(child);
+                middle.maxWeight = child.maxWeight;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+
+        if (node.term == null) {
+            node.term = term;
+            node.postings = new IntList();
+            termCount++;
+        }
+        node.postings.add(key);
+        updateWeights(node);
+    }
+
+    public void remove(String term, int key) {
+        Node node = findExact(term);
+        if (node == null || node.postings == null || !node.postings.removeValue(key)) {
+            return;
+        }
+        if (!node.postings.isEmpty()) {
+            updateWeights(node);
+            return;
+        }
+
+        node.term = null;
+        node.postings = null;
+        termCount--;
+
+        Node parent = node.parent;
+        if (node.childCount == 0) {
+            parent.removeChild(node);
+            node = parent;
+        }
+        // Re-compress: a non-terminal inner node with a single child is merged into it
+        if (node != root && node.term == null && node.childCount == 1) {
+            Node child = node.children[0];
+            child.label = node.label + child.label;
+            node.parent.replaceChild(node, child);
+            node = child.parent;
+        }
+        updateWeights(node);
+    }
+
+    public void prefixSearch(String prefix, IntConsumer action) {
+        Node start = findPrefix(prefix);
+        if (start == null) {
+            return;
+        }
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.postings != null) {
+                for (int i = 0; i < node.postings.size(); i++) {
+                    action.accept(node.postings.get(i));
+                }
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                stack.push(node.children[i]);
+            }
+        }
+    }
+
+    // Keys posted under exactly this term
+    public void exactSearch(String term, IntConsumer action) {
+        Node node = findExact(term);
+        if (node == null || node.postings == null) {
+            return;
+        }
+        for (int i = 0; i < node.postings.size(); i++) {
+            action.accept(node.postings.get(i));
+        }
+    }
+
+    // Up to limit terms starting with the prefix, most frequent first
+    public LinkedList<String> suggest(String prefix, int limit) {
+        LinkedList<String> result = new LinkedList<>();
+        Node start = findPrefix(prefix);
+        if (start == null || limit <= 0) {
+            return result;
+        }
+
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>((a, b) -> Integer.compare(b.weight, a.weight));
+        frontier.add(new Candidate(start, start.maxWeight, false));
+        while (!frontier.isEmpty() && result.size() < limit) {
+            Candidate candidate = frontier.poll();
+            Node node = candidate.node;
+            if (candidate.terminal) {
+                result.add(node.term);
+                continue;
+            }
+            if (node.term != null) {
+                frontier.add(new Candidate(node, node.weight(), true));
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                frontier.add(new Candidate(node.children[i], node.children[i].maxWeight, false));
+            }
+        }
+        return result;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public boolean isEmpty() {
+        return termCount == 0;
+    }
+
+    private Node findExact(String term) {
+        if (term == null) {
+            return null;
+        }
+        Node node = root;
+        int position = 0;
+        while (position < term.length()) {
+            Node child = node.child(term.charAt(position));
+            if (child == null || !term.startsWith(child.label, position)) {
+                return null;
+            }
+            node = child;
+            position += child.label.length();
+        }
+        return node;
+    }
+
+    // Highest node whose subtree holds exactly the terms starting with the prefix
+    private Node findPrefix(String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.child(prefix.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefixLength(child.label, prefix, position);
+            if (position + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    private void updateWeights(Node node) {
+        for (; node != null; node = node.parent) {
+            int weight = node.weight();
+            for (int i = 0; i < node.childCount; i++) {
+                weight = Math.max(weight, node.children[i].maxWeight);
+            }
+            node.maxWeight = weight;
+        }
+    }
+
+    private static int commonPrefixLength(String label, String text, int offset) {
+        int max = Math.min(label.length(), text.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == text.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,221 @@
+package datastructures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+// Substring index: every text is broken into overlapping three-character grams, each
+// mapped to the sorted keys containing it. A query intersects the postings of its own
+// grams and then verifies the few surviving candidates, so "contains" no longer has to
+// read every text. Grams are hashed into ints; a collision only adds a candidate that
+// verification throws away.
+public class TrigramIndex {
+    private final IntHashIndex<IntList> postings;
+    private final IntHashIndex<String> texts;
+
+    public TrigramIndex() {
+        postings = new IntHashIndex<>();
+        texts = new IntHashIndex<>();
+    }
+
+    // Callers normalize text and queries the same way, e.g. with TextNormalizer.normalize
+    public void add(int key, String text) {
+        if (texts.put(key, text) != null) {
+            throw new IllegalStateException("Key already indexed: " + key);
+        }
+        for (int gram : grams(text)) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                list = new IntList();
+                postings.put(gram, list);
+            }
+            int position = list.binarySearch(key);
+            if (position < 0) {
+                list.insert(-(position + 1), key);
+            }
+        }
+    }
+
+    public void remove(int key) {
+        String text = texts.remove(key);
+        if (text == null) {
+            return;
+        }
+        for (int gram : grams(text)) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            int position = list.binarySearch(key);
+            if (position >= 0) {
+                list.removeAt(position);
+                if (list.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    // Reports, in ascending key order, every key whose text contains the query
+    public void search(String query, IntConsumer action) {
+        matches(query).forEachRemaining(action);
+    }
+
+    // Lazy version of search(): candidates are intersected and verified only as the stream
+    // is pulled, so limit() stops the work early. The walk may span modifications of the index
+    // (under a lock released between elements, say): it resumes from the key after the last
+    // one reported, so keys present throughout are reported once each, in order, and keys
+    // added or removed in the meantime may or may not be.
+    public IntStream stream(String query) {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(matches(query),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    private PrimitiveIterator.OfInt matches(String query) {
+        if (query.length() < 3) {
+            // Too short to carry a gram: check every text, then report in key order
+            IntList matches = new IntList();
+            texts.forEach((key, text) -> {
+                if (text.contains(query)) {
+                    matches.add(key);
+                }
+            });
+            int[] sorted = matches.toArray();
+            Arrays.sort(sorted);
+            return Arrays.stream(sorted).iterator();
+        }
+
+        int[] grams = grams(query);
+        IntList[] lists = new IntList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return IntStream.empty().iterator();
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+        return new Matches(query, lists);
+    }
+
+    // Walks the shortest posting list, keeping candidates present in every list whose text really matches
+    private class Matches implements PrimitiveIterator.OfInt {
+        private final String query;
+        private final IntList[] lists;
+        private final int[] positions; // hints into each list, checked before use
+        private int next;
+        private boolean hasNext;
+        private boolean exhausted;
+
+        Matches(String query, IntList[] lists) {
+            this.query = query;
+            this.lists = lists;
+            this.positions = new int[lists.length];
+            this.exhausted = false;
+            find(Integer.MIN_VALUE);
+        }
+
+        // The next match is looked for lazily, so a write between two pulls is seen by the second
+        @Override
+        public boolean hasNext() {
+            if (!hasNext && !exhausted) {
+                if (next == Integer.MAX_VALUE) {
+                    exhausted = true;
+                } else {
+                    find(next + 1);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = false;
+            return next;
+        }
+
+        // Finds the first match with a key of at least from
+        private void find(int from) {
+            IntList smallest = lists[0];
+            int index = seek(smallest, positions[0], from);
+            while (index < smallest.size()) {
+                int key = smallest.get(index++);
+                String text;
+                if (inAll(lists, positions, key) && (text = texts.get(key)) != null && text.contains(query)) {
+                    positions[0] = index;
+                    next = key;
+                    hasNext = true;
+                    return;
+                }
+            }
+            positions[0] = index;
+            exhausted = true;
+        }
+    }
+
+    // Each list is scanned forward from where the previous candidate left it
+    private static boolean inAll(IntList[] lists, int[] positions, int key) {
+        for (int i = 1; i < lists.length; i++) {
+            IntList list = lists[i];
+            int position = seek(list, positions[i], key);
+            positions[i] = position;
+            if (position == list.size() || list.get(position) != key) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // First position holding a value of at least key. The hint is where the last seek on this
+    // list ended; it is used if nothing at or before it has reached key, and otherwise (the
+    // list shrank or shifted since) the position is found again by binary search.
+    private static int seek(IntList list, int hint, int key) {
+        int size = list.size();
+        if (hint > size || (hint > 0 && list.get(hint - 1) >= key)) {
+            int position = list.binarySearch(key);
+            return position >= 0 ? position : -(position + 1);
+        }
+        while (hint < size && list.get(hint) < key) {
+            hint++;
+        }
+        return hint;
+    }
+
+    private static int[] grams(String text) {
+        if (text.length() < 3) {
+            return new int[0];
+        }
+        int[] grams = new int[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        }
+        // Distinct grams only, so a repeated gram is neither indexed nor intersected twice
+        Arrays.sort(grams);
+        int count = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[count++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, count);
+    }
+
+    private static int gram(char a, char b, char c) {
+        if (a < 1024 && b < 1024 && c < 1024) {
+            return (a << 20) | (b << 10) | c;
+        }
+        // Outside the packable range the gram is hashed; the sign bit keeps it apart from packed grams
+        return (a * 961 + b * 31 + c) | Integer.MIN_VALUE;
+    }
+}
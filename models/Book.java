@@ -1,60 +1,144 @@
 package models;
 
+import utils.TextNormalizer;
+
 import java.time.LocalDate;
 
 public class Book {
+    private final int key;
     private String id;
-    private String title;
-    private String author;
-    private String isbn;
-    private LocalDate publicationDate;
-    private boolean available;
-    private String genre;
-
-    public Book(String id, String title, String author, String isbn, LocalDate publicationDate, String genre) {
-        this.id = id;
-        this.title = title;
-        this.author = author;
-        this.isbn = isbn;
-        this.publicationDate = publicationDate;
+    private volatile Details details; // replaced as a whole on every edit, never modified
+    private volatile boolean available; // read by other desks without the service lock
+
+    // The editable fields of a book as of one version. Immutable, so a reader holding one
+    // sees a consistent record however many edits happen meanwhile.
+    public static final class Details {
+        private final String title;
+        private final String author;
+        private final String isbn;
+        private final LocalDate publicationDate;
+        private final String genre;
+        // Normalized copies for searching
+        private final String titleKey;
+        private final String authorKey;
+        private final String genreKey;
+        private final long version;
+
+        public Details(String title, String author, String isbn, LocalDate publicationDate, String genre) {
+            this(title, author, isbn, publicationDate, genre, 0);
+        }
+
+        private Details(String title, String author, String isbn, LocalDate publicationDate, String genre, long version) {
+            this.title = title;
+            this.author = author;
+            this.isbn = isbn;
+            this.publicationDate = publicationDate;
+            this.genre = genre;
+            this.titleKey = TextNormalizer.normalize(title);
+            this.authorKey = TextNormalizer.normalize(author);
+            this.genreKey = TextNormalizer.normalize(genre);
+            this.version = version;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public LocalDate getPublicationDate() {
+            return publicationDate;
+        }
+
+        public String getGenre() {
+            return genre;
+        }
+
+        public String getTitleKey() {
+            return titleKey;
+        }
+
+        public String getAuthorKey() {
+            return authorKey;
+        }
+
+        public String getGenreKey() {
+            return genreKey;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    public Book(int key, String title, String author, String isbn, LocalDate publicationDate, String genre) {
+        this.key = key;
+        this.details = new Details(title, author, isbn, publicationDate, genre);
         this.available = true;
-        this.genre = genre;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public String getId() {
+        if (id == null) {
+            id = EntityIds.format(EntityIds.BOOK, key);
+        }
         return id;
     }
 
-    public String getTitle() {
-        return title;
+    public Details getDetails() {
+        return details;
     }
 
-    public void setTitle(String title) {
-        this.title = title;
+    // Incremented by every edit, so a writer can tell whether the book changed since it was read
+    public long getVersion() {
+        return details.version;
     }
 
-    public String getAuthor() {
-        return author;
+    // Publishes all the edited fields at once as the next version, only if the book is still
+    // at expectedVersion; false otherwise. There are no per-field setters: the catalog indexes
+    // hold the title, author and genre, so edits go through BookService.updateBook, which
+    // re-indexes the book around this call.
+    public synchronized boolean update(long expectedVersion, Details edited) {
+        Details current = details;
+        if (current.version != expectedVersion) {
+            return false;
+        }
+        details = new Details(edited.title, edited.author, edited.isbn, edited.publicationDate,
+                edited.genre, current.version + 1);
+        return true;
     }
 
-    public void setAuthor(String author) {
-        this.author = author;
+    public String getTitle() {
+        return details.title;
     }
 
-    public String getIsbn() {
-        return isbn;
+    public String getTitleKey() {
+        return details.titleKey;
+    }
+
+    public String getAuthor() {
+        return details.author;
     }
 
-    public void setIsbn(String isbn) {
-        this.isbn = isbn;
+    public String getAuthorKey() {
+        return details.authorKey;
     }
 
-    public LocalDate getPublicationDate() {
-        return publicationDate;
+    public String getIsbn() {
+        return details.isbn;
     }
 
-    public void setPublicationDate(LocalDate publicationDate) {
-        this.publicationDate = publicationDate;
+    public LocalDate getPublicationDate() {
+        return details.publicationDate;
     }
 
     public boolean isAvailable() {
@@ -66,11 +150,11 @@ public class Book {
     }
 
     public String getGenre() {
-        return genre;
+        return details.genre;
     }
 
-    public void setGenre(String genre) {
-        this.genre = genre;
+    public String getGenreKey() {
+        return details.genreKey;
     }
 
     @Override
@@ -78,19 +162,25 @@ public class Book {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Book book = (Book) obj;
-        return id.equals(book.id);
+        return key == book.key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
     }
 
     @Override
     public String toString() {
+        Details current = details;
         return "Book{" +
-                "id='" + id + '\'' +
-                ", title='" + title + '\'' +
-                ", author='" + author + '\'' +
-                ", isbn='" + isbn + '\'' +
-                ", publicationDate=" + publicationDate +
+                "id='" + getId() + '\'' +
+                ", title='" + current.title + '\'' +
+                ", author='" + current.author + '\'' +
+                ", isbn='" + current.isbn + '\'' +
+                ", publicationDate=" + current.publicationDate +
                 ", available=" + (available ? "Yes" : "No") +
-                ", genre='" + genre + '\'' +
+                ", genre='" + current.genre + '\'' +
                 '}';
     }
 } 
\ No newline at end of file
@@ -0,0 +1,45 @@
+package models;
+
+// Entities are keyed by a compact int; the prefixed form ("B0001") is only for display
+// and is built without String.format, padded to four digits and growing past 9999.
+public final class EntityIds {
+    public static final char BOOK = 'B';
+    public static final char PATRON = 'P';
+    public static final char TRANSACTION = 'T';
+    public static final char RESERVATION = 'R';
+
+    private static final int MIN_DIGITS = 4;
+
+    private EntityIds() {
+    }
+
+    public static String format(char prefix, int key) {
+        int digits = 1;
+        for (int remaining = key / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        int width = Math.max(digits, MIN_DIGITS);
+        char[] chars = new char[width + 1];
+        chars[0] = prefix;
+        for (int i = width, remaining = key; i > 0; i--, remaining /= 10) {
+            chars[i] = (char) ('0' + remaining % 10);
+        }
+        return new String(chars);
+    }
+
+    // Returns -1 when the ID does not carry the expected prefix or is not a number
+    public static int parse(char prefix, String id) {
+        if (id == null || id.length() < 2 || id.charAt(0) != prefix) {
+            return -1;
+        }
+        int key = 0;
+        for (int i = 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || key > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+}
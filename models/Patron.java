@@ -1,54 +1,112 @@
 package models;
 
+import utils.TextNormalizer;
+
 public class Patron {
+    private final int key;
     private String id;
-    private String name;
-    private String contactInfo;
-    private String address;
-    private String membershipDate;
-
-    public Patron(String id, String name, String contactInfo, String address, String membershipDate) {
-        this.id = id;
-        this.name = name;
-        this.contactInfo = contactInfo;
-        this.address = address;
-        this.membershipDate = membershipDate;
+    private volatile Details details; // replaced as a whole on every edit, never modified
+
+    // The editable fields of a patron as of one version; immutable like Book.Details
+    public static final class Details {
+        private final String name;
+        private final String contactInfo;
+        private final String address;
+        private final String membershipDate;
+        private final String nameKey; // normalized name for searching
+        private final long version;
+
+        public Details(String name, String contactInfo, String address, String membershipDate) {
+            this(name, contactInfo, address, membershipDate, 0);
+        }
+
+        private Details(String name, String contactInfo, String address, String membershipDate, long version) {
+            this.name = name;
+            this.contactInfo = contactInfo;
+            this.address = address;
+            this.membershipDate = membershipDate;
+            this.nameKey = TextNormalizer.normalize(name);
+            this.version = version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getContactInfo() {
+            return contactInfo;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public String getMembershipDate() {
+            return membershipDate;
+        }
+
+        public String getNameKey() {
+            return nameKey;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    public Patron(int key, String name, String contactInfo, String address, String membershipDate) {
+        this.key = key;
+        this.details = new Details(name, contactInfo, address, membershipDate);
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public String getId() {
+        if (id == null) {
+            id = EntityIds.format(EntityIds.PATRON, key);
+        }
         return id;
     }
 
-    public String getName() {
-        return name;
+    public Details getDetails() {
+        return details;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public long getVersion() {
+        return details.version;
     }
 
-    public String getContactInfo() {
-        return contactInfo;
+    // Compare-and-set edit as in Book.update; PatronService.updatePatron re-indexes the name around it
+    public synchronized boolean update(long expectedVersion, Details edited) {
+        Details current = details;
+        if (current.version != expectedVersion) {
+            return false;
+        }
+        details = new Details(edited.name, edited.contactInfo, edited.address, edited.membershipDate,
+                current.version + 1);
+        return true;
     }
 
-    public void setContactInfo(String contactInfo) {
-        this.contactInfo = contactInfo;
+    public String getName() {
+        return details.name;
     }
 
-    public String getAddress() {
-        return address;
+    public String getNameKey() {
+        return details.nameKey;
     }
 
-    public void setAddress(String address) {
-        this.address = address;
+    public String getContactInfo() {
+        return details.contactInfo;
     }
 
-    public String getMembershipDate() {
-        return membershipDate;
+    public String getAddress() {
+        return details.address;
     }
 
-    public void setMembershipDate(String membershipDate) {
-        this.membershipDate = membershipDate;
+    public String getMembershipDate() {
+        return details.membershipDate;
     }
 
     @Override
@@ -56,17 +114,23 @@ public class Patron {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Patron patron = (Patron) obj;
-        return id.equals(patron.id);
+        return key == patron.key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
     }
 
     @Override
     public String toString() {
+        Details current = details;
         return "Patron{" +
-                "id='" + id + '\'' +
-                ", name='" + name + '\'' +
-                ", contactInfo='" + contactInfo + '\'' +
-                ", address='" + address + '\'' +
-                ", membershipDate='" + membershipDate + '\'' +
+                "id='" + getId() + '\'' +
+                ", name='" + current.name + '\'' +
+                ", contactInfo='" + current.contactInfo + '\'' +
+                ", address='" + current.address + '\'' +
+                ", membershipDate='" + current.membershipDate + '\'' +
                 '}';
     }
 } 
\ No newline at end of file
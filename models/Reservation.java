@@ -3,30 +3,48 @@ package models;
 import java.time.LocalDate;
 
 public class Reservation {
+    private final int key;
+    private final int bookKey;
+    private final int patronKey;
     private String id;
-    private String bookId;
-    private String patronId;
     private LocalDate reservationDate;
-    private boolean isActive;
+    private volatile boolean isActive;
+    private int queueTicket;
 
-    public Reservation(String id, String bookId, String patronId, LocalDate reservationDate) {
-        this.id = id;
-        this.bookId = bookId;
-        this.patronId = patronId;
+    public Reservation(int key, int bookKey, int patronKey, LocalDate reservationDate) {
+        this.key = key;
+        this.bookKey = bookKey;
+        this.patronKey = patronKey;
         this.reservationDate = reservationDate;
         this.isActive = true;
+        this.queueTicket = -1;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public String getId() {
+        if (id == null) {
+            id = EntityIds.format(EntityIds.RESERVATION, key);
+        }
         return id;
     }
 
+    public int getBookKey() {
+        return bookKey;
+    }
+
     public String getBookId() {
-        return bookId;
+        return EntityIds.format(EntityIds.BOOK, bookKey);
+    }
+
+    public int getPatronKey() {
+        return patronKey;
     }
 
     public String getPatronId() {
-        return patronId;
+        return EntityIds.format(EntityIds.PATRON, patronKey);
     }
 
     public LocalDate getReservationDate() {
@@ -41,20 +59,34 @@ public class Reservation {
         isActive = active;
     }
 
+    // Ticket of this reservation in its book's waiting queue
+    public int getQueueTicket() {
+        return queueTicket;
+    }
+
+    public void setQueueTicket(int queueTicket) {
+        this.queueTicket = queueTicket;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Reservation reservation = (Reservation) obj;
-        return id.equals(reservation.id);
+        return key == reservation.key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
     }
 
     @Override
     public String toString() {
         return "Reservation{" +
-                "id='" + id + '\'' +
-                ", bookId='" + bookId + '\'' +
-                ", patronId='" + patronId + '\'' +
+                "id='" + getId() + '\'' +
+                ", bookId='" + getBookId() + '\'' +
+                ", patronId='" + getPatronId() + '\'' +
                 ", reservationDate=" + reservationDate +
                 ", isActive=" + isActive +
                 '}';
@@ -2,35 +2,57 @@ package models;
 
 import java.time.LocalDate;
 
+// One state of a loan. Immutable, so the front ends can read one after the service lock is
+// released; returning the book or moving the due date makes a new Transaction with the same
+// key, which TransactionService puts in place of the old one.
 public class Transaction {
+    private final int key;
+    private final int bookKey;
+    private final int patronKey;
     private String id;
-    private String bookId;
-    private String patronId;
-    private LocalDate borrowDate;
-    private LocalDate dueDate;
-    private LocalDate returnDate;
-    private boolean isReturned;
-
-    public Transaction(String id, String bookId, String patronId, LocalDate borrowDate, LocalDate dueDate) {
-        this.id = id;
-        this.bookId = bookId;
-        this.patronId = patronId;
+    private final LocalDate borrowDate;
+    private final LocalDate dueDate;
+    private final LocalDate returnDate; // null while the loan is open
+
+    public Transaction(int key, int bookKey, int patronKey, LocalDate borrowDate, LocalDate dueDate) {
+        this(key, bookKey, patronKey, borrowDate, dueDate, null);
+    }
+
+    public Transaction(int key, int bookKey, int patronKey, LocalDate borrowDate, LocalDate dueDate,
+                       LocalDate returnDate) {
+        this.key = key;
+        this.bookKey = bookKey;
+        this.patronKey = patronKey;
         this.borrowDate = borrowDate;
         this.dueDate = dueDate;
-        this.isReturned = false;
-        this.returnDate = null;
+        this.returnDate = returnDate;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public String getId() {
+        if (id == null) {
+            id = EntityIds.format(EntityIds.TRANSACTION, key);
+        }
         return id;
     }
 
+    public int getBookKey() {
+        return bookKey;
+    }
+
     public String getBookId() {
-        return bookId;
+        return EntityIds.format(EntityIds.BOOK, bookKey);
+    }
+
+    public int getPatronKey() {
+        return patronKey;
     }
 
     public String getPatronId() {
-        return patronId;
+        return EntityIds.format(EntityIds.PATRON, patronKey);
     }
 
     public LocalDate getBorrowDate() {
@@ -41,21 +63,22 @@ public class Transaction {
         return dueDate;
     }
 
-    public void setDueDate(LocalDate dueDate) {
-        this.dueDate = dueDate;
+    // This loan with another due date
+    public Transaction withDueDate(LocalDate newDueDate) {
+        return new Transaction(key, bookKey, patronKey, borrowDate, newDueDate, returnDate);
     }
 
     public LocalDate getReturnDate() {
         return returnDate;
     }
 
-    public void setReturnDate(LocalDate returnDate) {
-        this.returnDate = returnDate;
-        this.isReturned = true;
+    // This loan closed on the given day
+    public Transaction returnedOn(LocalDate date) {
+        return new Transaction(key, bookKey, patronKey, borrowDate, dueDate, date);
     }
 
     public boolean isReturned() {
-        return isReturned;
+        return returnDate != null;
     }
 
     @Override
@@ -63,19 +86,24 @@ public class Transaction {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Transaction transaction = (Transaction) obj;
-        return id.equals(transaction.id);
+        return key == transaction.key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
     }
 
     @Override
     public String toString() {
         return "Transaction{" +
-                "id='" + id + '\'' +
-                ", bookId='" + bookId + '\'' +
-                ", patronId='" + patronId + '\'' +
+                "id='" + getId() + '\'' +
+                ", bookId='" + getBookId() + '\'' +
+                ", patronId='" + getPatronId() + '\'' +
                 ", borrowDate=" + borrowDate +
                 ", dueDate=" + dueDate +
                 ", returnDate=" + returnDate +
-                ", isReturned=" + isReturned +
+                ", isReturned=" + isReturned() +
                 '}';
     }
 } 
\ No newline at end of file
@@ -1,122 +1,518 @@
 package services;
 
+import datastructures.BKTree;
 import datastructures.BinarySearchTree;
+import datastructures.IntHashIndex;
+import datastructures.InvertedIndex;
 import datastructures.LinkedList;
+import datastructures.RadixTree;
+import datastructures.TrigramIndex;
 import models.Book;
+import models.EntityIds;
+import utils.IdAllocator;
+import utils.TextNormalizer;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+// Safe for concurrent use: queries share a read lock and changes take the write lock
 public class BookService {
+    // Catalogs smaller than this are scanned on the calling thread
+    private static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 1 << 13;
+    private static final int SCAN_CHUNK_SIZE = 1 << 10;
+
     private LinkedList<Book> books;
+    private IntHashIndex<Book> bookIndex;
     private BinarySearchTree<Book> booksByTitle;
     private BinarySearchTree<Book> booksByAuthor;
     private BinarySearchTree<Book> booksById;
-    private int nextId;
+    private RadixTree titleTerms;
+    private RadixTree authorTerms;
+    private BKTree vocabulary;
+    private InvertedIndex keywordIndex;
+    private TrigramIndex titleTrigrams;
+    private TrigramIndex authorTrigrams;
+    private volatile Book[] catalogSnapshot; // books in catalog order, null once the catalog changes
+    private volatile int parallelScanThreshold;
+    private ReentrantReadWriteLock lock;
+    private IdAllocator ids;
 
     public BookService() {
+        this(new IdAllocator());
+    }
+
+    public BookService(IdAllocator ids) {
         books = new LinkedList<>();
-        booksByTitle = new BinarySearchTree<>(Comparator.comparing(Book::getTitle));
-        booksByAuthor = new BinarySearchTree<>(Comparator.comparing(Book::getAuthor));
-        booksById = new BinarySearchTree<>(Comparator.comparing(Book::getId));
-        nextId = 1;
+        bookIndex = new IntHashIndex<>();
+        booksByTitle = new BinarySearchTree<>(Comparator.comparing(Book::getTitle), true);
+        // Ties broken by key so every book has its own place, which a seeking iterator needs
+        booksByAuthor = new BinarySearchTree<>(Comparator.comparing(Book::getAuthorKey).thenComparingInt(Book::getKey));
+        booksById = new BinarySearchTree<>(Comparator.comparingInt(Book::getKey));
+        titleTerms = new RadixTree();
+        authorTerms = new RadixTree();
+        vocabulary = new BKTree();
+        keywordIndex = new InvertedIndex();
+        titleTrigrams = new TrigramIndex();
+        authorTrigrams = new TrigramIndex();
+        parallelScanThreshold = DEFAULT_PARALLEL_SCAN_THRESHOLD;
+        lock = new ReentrantReadWriteLock();
+        this.ids = ids;
     }
 
     public Book addBook(String title, String author, String isbn, LocalDate publicationDate, String genre) {
-        String id = "B" + String.format("%04d", nextId++);
-        Book book = new Book(id, title, author, isbn, publicationDate, genre);
-        books.add(book);
-        booksByTitle.insert(book);
-        booksByAuthor.insert(book);
-        booksById.insert(book);
-        return book;
+        lock.writeLock().lock();
+        try {
+            Book book = new Book(ids.nextId(), title, author, isbn, publicationDate, genre);
+            books.add(book);
+            catalogSnapshot = null;
+            bookIndex.put(book.getKey(), book);
+            booksByTitle.insert(book);
+            booksByAuthor.insert(book);
+            booksById.insert(book);
+            indexTerms(book);
+            return book;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public boolean removeBook(String id) {
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
-            if (book.getId().equals(id)) {
-                books.remove(book);
-                Book placeholder = new Book(id, "", "", "", LocalDate.now(), "");
-                booksByTitle.delete(placeholder);
-                booksByAuthor.delete(placeholder);
-                booksById.delete(placeholder);
-                return true;
+        lock.writeLock().lock();
+        try {
+            Book book = bookIndex.remove(EntityIds.parse(EntityIds.BOOK, id));
+            if (book == null) {
+                return false;
             }
+            books.remove(book);
+            catalogSnapshot = null;
+            booksByTitle.delete(book);
+            booksByAuthor.delete(book);
+            booksById.delete(book);
+            unindexTerms(book);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
 
     public Book findBookById(String id) {
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
-            if (book.getId().equals(id)) {
-                return book;
-            }
+        return findBookByKey(EntityIds.parse(EntityIds.BOOK, id));
+    }
+
+    public Book findBookByKey(int key) {
+        lock.readLock().lock();
+        try {
+            return bookIndex.get(key);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     public LinkedList<Book> findBooksByTitle(String title) {
+        return streamBooksByTitle(title).collect(LinkedList.collector());
+    }
+
+    public LinkedList<Book> findBooksByAuthor(String author) {
+        return streamBooksByAuthor(author).collect(LinkedList.collector());
+    }
+
+    // The stream variants compute matches only as they are consumed, so limit() ends the search early
+    public Stream<Book> streamBooksByTitle(String title) {
+        lock.readLock().lock();
+        try {
+            return LockedSpliterator.stream(streamBySubstring(titleTrigrams, title), lock.readLock());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Authors starting with the query come first, straight from the author index, followed by
+    // the other authors containing it, e.g. "King" finds "Kingsley Amis" and then "Stephen King"
+    public Stream<Book> streamBooksByAuthor(String author) {
+        String query = TextNormalizer.normalize(author);
+        lock.readLock().lock();
+        try {
+            // Seeks the tree again on each step, so books added or removed mid-stream are tolerated
+            Iterator<Book> prefixMatches = booksByAuthor.seekingIterator(authorKey(author),
+                    authorKey(author + Character.MAX_VALUE));
+            Stream<Book> prefixStream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(prefixMatches,
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+
+            // Every prefix match contains the query too, so those are skipped the second time
+            Stream<Book> substringStream = streamBySubstring(authorTrigrams, author)
+                    .filter(book -> book != null && !book.getAuthorKey().startsWith(query));
+            return LockedSpliterator.stream(Stream.concat(prefixStream, substringStream), lock.readLock());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Stream<Book> streamBySubstring(TrigramIndex index, String text) {
+        return index.stream(TextNormalizer.normalize(text)).mapToObj(bookIndex::get);
+    }
+
+    // Books with a title word starting with each word of the prefix
+    public LinkedList<Book> findBooksByTitlePrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            return findByTermPrefix(titleTerms, prefix);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LinkedList<Book> findBooksByAuthorPrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            return findByTermPrefix(authorTerms, prefix);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LinkedList<String> suggestTitleWords(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return titleTerms.suggest(TextNormalizer.normalize(prefix), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LinkedList<String> suggestAuthorWords(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return authorTerms.suggest(TextNormalizer.normalize(prefix), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LinkedList<Book> findByTermPrefix(RadixTree terms, String prefix) {
         LinkedList<Book> result = new LinkedList<>();
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
-            if (book.getTitle().toLowerCase().contains(title.toLowerCase())) {
+        String[] tokens = TextNormalizer.tokenize(prefix);
+        if (tokens.length == 0) {
+            return result;
+        }
+
+        // Matches for the first word, narrowed by each following word
+        IntHashIndex<Book> matches = collectTermPrefix(terms, tokens[0], null);
+        for (int i = 1; i < tokens.length && !matches.isEmpty(); i++) {
+            matches = collectTermPrefix(terms, tokens[i], matches);
+        }
+
+        IntHashIndex<Book> remaining = matches;
+        terms.prefixSearch(tokens[tokens.length - 1], key -> {
+            Book book = remaining.remove(key);
+            if (book != null) {
                 result.add(book);
             }
-        }
+        });
         return result;
     }
 
-    public LinkedList<Book> findBooksByAuthor(String author) {
-        LinkedList<Book> result = new LinkedList<>();
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
-            if (book.getAuthor().toLowerCase().contains(author.toLowerCase())) {
-                result.add(book);
+    private IntHashIndex<Book> collectTermPrefix(RadixTree terms, String prefix, IntHashIndex<Book> within) {
+        IntHashIndex<Book> found = new IntHashIndex<>();
+        terms.prefixSearch(prefix, key -> {
+            Book book = within == null ? bookIndex.get(key) : within.get(key);
+            if (book != null) {
+                found.put(key, book);
+            }
+        });
+        return found;
+    }
+
+    // Books matching every keyword, ranked by relevance; any keyword when none match them all
+    public LinkedList<Book> searchBooksByKeyword(String keyword) {
+        return streamBooksByKeyword(keyword).collect(LinkedList.collector());
+    }
+
+    // Ranking needs every match scored, but books are only looked up as the stream is consumed
+    public Stream<Book> streamBooksByKeyword(String keyword) {
+        lock.readLock().lock();
+        try {
+            int[] keys = keywordIndex.searchAll(keyword);
+            if (keys.length == 0) {
+                keys = keywordIndex.searchAny(keyword);
             }
+            return LockedSpliterator.stream(Arrays.stream(keys).mapToObj(bookIndex::get), lock.readLock());
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
+    // Books whose title or author words are each within maxDistance edits of a query word,
+    // closest overall match first
+    public LinkedList<Book> fuzzySearchBooks(String query, int maxDistance) {
+        lock.readLock().lock();
+        try {
+            LinkedList<Book> result = new LinkedList<>();
+            for (int key : FuzzyQuery.search(vocabulary, query, maxDistance, titleTerms, authorTerms)) {
+                result.add(bookIndex.get(key));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books matching a filter no index can answer, in catalog order. Large catalogs are
+    // scanned on the common fork/join pool: the snapshot is split into chunks, each worker
+    // collects its matches into its own list, and the lists are spliced together at the end.
+    public LinkedList<Book> scanBooks(Predicate<? super Book> filter) {
+        return streamScan(filter).collect(LinkedList.collector());
+    }
+
+    public Stream<Book> streamScan(Predicate<? super Book> filter) {
+        Book[] catalog = snapshot();
+        boolean parallel = catalog.length >= parallelScanThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+        return StreamSupport.stream(new ChunkSpliterator(catalog, 0, catalog.length), parallel).filter(filter);
+    }
+
+    public void setParallelScanThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        parallelScanThreshold = threshold;
+    }
+
+    // Copy-on-write view of the catalog: never modified once published, so readers use it
+    // without locking. Adds and removes discard it and the next reader rebuilds it; edits
+    // swap a book's details in place and keep it valid.
+    private Book[] snapshot() {
+        Book[] catalog = catalogSnapshot;
+        if (catalog != null) {
+            return catalog;
+        }
+        lock.readLock().lock();
+        try {
+            catalog = new Book[books.size()];
+            int i = 0;
+            for (Book book : books) {
+                catalog[i++] = book;
+            }
+            catalogSnapshot = catalog;
+            return catalog;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Halves its range on each split until the chunks reach SCAN_CHUNK_SIZE
+    private static final class ChunkSpliterator implements Spliterator<Book> {
+        private final Book[] books;
+        private int index;
+        private final int end;
+
+        ChunkSpliterator(Book[] books, int index, int end) {
+            this.books = books;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Book> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(books[index++]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Book> action) {
+            for (int i = index; i < end; i++) {
+                action.accept(books[i]);
+            }
+            index = end;
+        }
+
+        @Override
+        public Spliterator<Book> trySplit() {
+            if (end - index <= SCAN_CHUNK_SIZE) {
+                return null;
+            }
+            int middle = (index + end) >>> 1;
+            Spliterator<Book> prefix = new ChunkSpliterator(books, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+    }
+
+    // The search keys are already normalized, so indexing reuses them instead of new copies
+    private void indexTerms(Book book) {
+        for (String token : TextNormalizer.tokenize(book.getTitleKey())) {
+            titleTerms.add(token, book.getKey());
+            vocabulary.add(token);
+        }
+        for (String token : TextNormalizer.tokenize(book.getAuthorKey())) {
+            authorTerms.add(token, book.getKey());
+            vocabulary.add(token);
+        }
+        keywordIndex.add(book.getKey(), keywordText(book));
+        titleTrigrams.add(book.getKey(), book.getTitleKey());
+        authorTrigrams.add(book.getKey(), book.getAuthorKey());
+    }
+
+    private void unindexTerms(Book book) {
+        for (String token : TextNormalizer.tokenize(book.getTitleKey())) {
+            titleTerms.remove(token, book.getKey());
+            vocabulary.remove(token);
+        }
+        for (String token : TextNormalizer.tokenize(book.getAuthorKey())) {
+            authorTerms.remove(token, book.getKey());
+            vocabulary.remove(token);
+        }
+        keywordIndex.remove(book.getKey(), keywordText(book));
+        titleTrigrams.remove(book.getKey());
+        authorTrigrams.remove(book.getKey());
+    }
+
+    private String keywordText(Book book) {
+        return book.getTitleKey() + " " + book.getAuthorKey() + " " + book.getGenreKey();
+    }
+
+    private Book authorKey(String author) {
+        return new Book(0, "", author, "", null, "");
+    }
+
+    // A copy, so callers can iterate it while the catalog changes
     public LinkedList<Book> getAllBooks() {
-        return books;
+        LinkedList<Book> result = new LinkedList<>();
+        for (Book book : snapshot()) {
+            result.add(book);
+        }
+        return result;
+    }
+
+    // Every book in ID order without copying the catalog. Each step re-seeks the ID tree for the
+    // next key, so books added or removed while the stream is consumed are seen or skipped cleanly.
+    public Stream<Book> streamBooks() {
+        Iterator<Book> byId = booksById.seekingIterator(null, null);
+        return LockedSpliterator.stream(StreamSupport.stream(Spliterators.spliteratorUnknownSize(byId,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false), lock.readLock());
+    }
+
+    public int getBookCount() {
+        lock.readLock().lock();
+        try {
+            return bookIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One page of the catalog in ID, title or author order
+    public LinkedList<Book> getBooksPage(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return booksById.range(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LinkedList<Book> getBooksSortedByTitle(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return booksByTitle.range(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LinkedList<Book> getBooksSortedByAuthor(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return booksByAuthor.range(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    // The books are collected under the lock and displayed after releasing it
     public void displayBooksSortedByTitle(Consumer<Book> displayFunction) {
-        booksByTitle.inorderTraversal(displayFunction);
+        sorted(booksByTitle).forEach(displayFunction);
     }
 
     public void displayBooksSortedByAuthor(Consumer<Book> displayFunction) {
-        booksByAuthor.inorderTraversal(displayFunction);
-    }
-
-    public void updateBook(Book book) {
-        Book existingBook = findBookById(book.getId());
-        if (existingBook != null) {
-            // Remove from trees
-            Book placeholder = new Book(book.getId(), "", "", "", LocalDate.now(), "");
-            booksByTitle.delete(placeholder);
-            booksByAuthor.delete(placeholder);
-            
-            // Update the book
-            existingBook.setTitle(book.getTitle());
-            existingBook.setAuthor(book.getAuthor());
-            existingBook.setIsbn(book.getIsbn());
-            existingBook.setPublicationDate(book.getPublicationDate());
-            existingBook.setGenre(book.getGenre());
-            
-            // Reinsert into trees
+        sorted(booksByAuthor).forEach(displayFunction);
+    }
+
+    private LinkedList<Book> sorted(BinarySearchTree<Book> tree) {
+        lock.readLock().lock();
+        try {
+            LinkedList<Book> result = new LinkedList<>();
+            tree.inorderTraversal(result::add);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Applies the edit only if the book is still at the version the caller read, so two
+    // desks editing the same book cannot silently overwrite each other
+    public UpdateResult updateBook(int key, long expectedVersion, Book.Details edited) {
+        lock.writeLock().lock();
+        try {
+            Book existingBook = bookIndex.get(key);
+            if (existingBook == null) {
+                return UpdateResult.NOT_FOUND;
+            }
+            if (existingBook.getVersion() != expectedVersion) {
+                return UpdateResult.CONFLICT;
+            }
+
+            // Remove from trees while the old title and author are still in place
+            booksByTitle.delete(existingBook);
+            booksByAuthor.delete(existingBook);
+            unindexTerms(existingBook);
+
+            // Readers holding the old details keep a consistent view of the previous version.
+            // Cannot fail: the version was checked above and edits only happen under this lock.
+            existingBook.update(expectedVersion, edited);
+
             booksByTitle.insert(existingBook);
             booksByAuthor.insert(existingBook);
+            indexTerms(existingBook);
+            return UpdateResult.UPDATED;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
-    public void updateBookAvailability(String bookId, boolean available) {
-        Book book = findBookById(bookId);
-        if (book != null) {
-            book.setAvailable(available);
+    // Availability is a volatile flag outside every index, so the read lock is enough to keep
+    // the book from being removed mid-update; callers serialize changes to one book themselves
+    public void updateBookAvailability(int bookKey, boolean available) {
+        lock.readLock().lock();
+        try {
+            Book book = findBookByKey(bookKey);
+            if (book != null) {
+                book.setAvailable(available);
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,289 @@
+package services;
+
+import models.Book;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// External merge sort for catalogs larger than the heap. Books are buffered until the
+// memory budget is reached, then the buffer is sorted and spilled to a temporary run file
+// in a compact binary format. The runs are k-way merged through a heap straight into the
+// output, with the fan-in capped so the read buffers also fit in the budget; more runs
+// than that are merged in several passes. Sorting is stable.
+public class CatalogExporter {
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    private static final int BOOK_OVERHEAD_BYTES = 160; // objects, headers and references per book
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final long memoryBudget;
+
+    public CatalogExporter(long memoryBudget) {
+        if (memoryBudget < 2L * RUN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Memory budget must be at least " + 2 * RUN_BUFFER_SIZE + " bytes");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    // Writes the books as CSV in the given order, one line per book after a header line
+    public void export(Iterator<Book> books, Comparator<Book> order, Writer out) throws IOException {
+        out.write("id,title,author,isbn,publicationDate,genre,available\n");
+        sort(books, order, book -> {
+            try {
+                out.write(csvLine(book));
+            } catch (IOException e) {
+                throw new UncheckedWriteException(e);
+            }
+        });
+        out.flush();
+    }
+
+    // Streams the books to the consumer in sorted order
+    public void sort(Iterator<Book> books, Comparator<Book> order, Consumer<Book> action) throws IOException {
+        List<Path> files = new ArrayList<>(); // every temporary file, deleted however the sort ends
+        List<Path> runs = new ArrayList<>();
+        Throwable failure = null;
+        try {
+            Book[] buffer = new Book[1024];
+            int count = 0;
+            long bufferedBytes = 0;
+            while (books.hasNext()) {
+                Book book = books.next();
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                }
+                buffer[count++] = book;
+                bufferedBytes += estimateSize(book);
+                if (bufferedBytes >= memoryBudget) {
+                    runs.add(spill(buffer, count, order, files));
+                    Arrays.fill(buffer, 0, count, null);
+                    count = 0;
+                    bufferedBytes = 0;
+                }
+            }
+
+            // Everything fitted in memory: no files needed
+            if (runs.isEmpty()) {
+                Arrays.sort(buffer, 0, count, order);
+                for (int i = 0; i < count; i++) {
+                    action.accept(buffer[i]);
+                }
+                return;
+            }
+            if (count > 0) {
+                runs.add(spill(buffer, count, order, files));
+            }
+            buffer = null;
+
+            int fanIn = (int) Math.max(2, memoryBudget / RUN_BUFFER_SIZE - 1);
+            while (runs.size() > fanIn) {
+                // Each pass merges neighbouring runs, so equal books keep their input order
+                List<Path> next = new ArrayList<>();
+                for (int start = 0; start < runs.size(); start += fanIn) {
+                    List<Path> group = runs.subList(start, Math.min(start + fanIn, runs.size()));
+                    if (group.size() == 1) {
+                        next.add(group.get(0));
+                        continue;
+                    }
+                    Path merged = createRun(files);
+                    try (DataOutputStream output = openRun(merged)) {
+                        merge(group, order, book -> {
+                            try {
+                                writeBook(output, book);
+                            } catch (IOException e) {
+                                throw new UncheckedWriteException(e);
+                            }
+                        });
+                    }
+                    deleteAll(group, null);
+                    next.add(merged);
+                }
+                runs = next;
+            }
+            merge(runs, order, action);
+        } catch (UncheckedWriteException e) {
+            failure = e.getCause();
+            throw e.getCause();
+        } catch (IOException | RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            deleteAll(files, failure);
+        }
+    }
+
+    private Path spill(Book[] buffer, int count, Comparator<Book> order, List<Path> files) throws IOException {
+        Arrays.sort(buffer, 0, count, order);
+        Path run = createRun(files);
+        try (DataOutputStream output = openRun(run)) {
+            for (int i = 0; i < count; i++) {
+                writeBook(output, buffer[i]);
+            }
+        }
+        return run;
+    }
+
+    private static void merge(List<Path> runs, Comparator<Book> order, Consumer<Book> action) throws IOException {
+        // Ties go to the earlier run, which holds the earlier input
+        PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> {
+            int result = order.compare(a.current, b.current);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+        });
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            while (!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                action.accept(reader.current);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.input.close();
+            }
+        }
+    }
+
+    private static class RunReader {
+        final DataInputStream input;
+        final int index;
+        Book current;
+
+        RunReader(Path run, int index) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            current = readBook(input);
+            return current != null;
+        }
+    }
+
+    // Carries an IOException from a write inside a Consumer out to sort()
+    private static class UncheckedWriteException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    private static Path createRun(List<Path> files) throws IOException {
+        Path run = Files.createTempFile("catalog-run-", ".bin");
+        files.add(run);
+        return run;
+    }
+
+    private static void writeBook(DataOutputStream output, Book book) throws IOException {
+        output.writeInt(book.getKey());
+        writeString(output, book.getTitle());
+        writeString(output, book.getAuthor());
+        writeString(output, book.getIsbn());
+        output.writeLong(book.getPublicationDate() == null ? NO_DATE : book.getPublicationDate().toEpochDay());
+        writeString(output, book.getGenre());
+        output.writeBoolean(book.isAvailable());
+    }
+
+    // Length-prefixed UTF-8; writeUTF would reject strings whose encoding exceeds 65535 bytes
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Book readBook(DataInputStream input) throws IOException {
+        int key;
+        try {
+            key = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        String title = readString(input);
+        String author = readString(input);
+        String isbn = readString(input);
+        long day = input.readLong();
+        String genre = readString(input);
+        Book book = new Book(key, title, author, isbn, day == NO_DATE ? null : LocalDate.ofEpochDay(day), genre);
+        book.setAvailable(input.readBoolean());
+        return book;
+    }
+
+    private static long estimateSize(Book book) {
+        return BOOK_OVERHEAD_BYTES + 2L * (book.getTitle().length() + book.getAuthor().length()
+                + book.getIsbn().length() + book.getGenre().length());
+    }
+
+    private static String csvLine(Book book) {
+        return book.getId() + "," + csv(book.getTitle()) + "," + csv(book.getAuthor()) + ","
+                + csv(book.getIsbn()) + "," + (book.getPublicationDate() == null ? "" : book.getPublicationDate())
+                + "," + csv(book.getGenre()) + "," + book.isAvailable() + "\n";
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // Tries every file even if some deletes fail. When the sort is already failing, delete errors
+    // are attached to that exception as suppressed rather than replacing it.
+    private static void deleteAll(List<Path> runs, Throwable failure) throws IOException {
+        IOException first = null;
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package services;
+
+import datastructures.BKTree;
+import datastructures.IntHashIndex;
+import datastructures.RadixTree;
+import utils.TextNormalizer;
+
+import java.util.Arrays;
+
+// Typo-tolerant lookup shared by the services. Each query word is expanded through the
+// BK-tree vocabulary into the terms within maxDistance edits, and the keys posted under
+// those terms are intersected across words. Keys rank by the summed distance of their
+// closest term per word, then by key.
+final class FuzzyQuery {
+    private FuzzyQuery() {
+    }
+
+    static int[] search(BKTree vocabulary, String query, int maxDistance, RadixTree... termIndexes) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Edit distance cannot be negative");
+        }
+        IntHashIndex<int[]> totals = null;
+        for (String token : TextNormalizer.tokenize(query)) {
+            IntHashIndex<int[]> closest = new IntHashIndex<>();
+            vocabulary.search(token, maxDistance, (term, distance) -> {
+                for (RadixTree terms : termIndexes) {
+                    terms.exactSearch(term, key -> {
+                        int[] best = closest.get(key);
+                        if (best == null) {
+                            closest.put(key, new int[] {distance});
+                        } else if (distance < best[0]) {
+                            best[0] = distance;
+                        }
+                    });
+                }
+            });
+
+            if (totals == null) {
+                totals = closest;
+            } else {
+                IntHashIndex<int[]> both = new IntHashIndex<>();
+                totals.forEach((key, total) -> {
+                    int[] best = closest.get(key);
+                    if (best != null) {
+                        total[0] += best[0];
+                        both.put(key, total);
+                    }
+                });
+                totals = both;
+            }
+            if (totals.isEmpty()) {
+                break;
+            }
+        }
+        if (totals == null) {
+            return new int[0];
+        }
+
+        // Pack (distance, key) so ranking is a single primitive sort
+        long[] packed = new long[totals.size()];
+        int[] count = {0};
+        totals.forEach((key, total) -> packed[count[0]++] = ((long) total[0] << 32) | key);
+        Arrays.sort(packed);
+        int[] keys = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            keys[i] = (int) packed[i];
+        }
+        return keys;
+    }
+}
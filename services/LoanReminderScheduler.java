@@ -0,0 +1,120 @@
+package services;
+
+import datastructures.IndexedMinHeap;
+import datastructures.LinkedList;
+import models.Transaction;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+// Fires due-soon and overdue events for open loans on a single daemon thread. Pending
+// reminders sit in a min-heap keyed by the day they fire, and the thread sleeps until
+// the earliest of them (or until the schedule changes) instead of polling. The thread
+// is only started once someone registers a listener.
+final class LoanReminderScheduler {
+    private final Clock clock;
+    private final int dueSoonDays;
+    private final IndexedMinHeap<Reminder> reminders;
+    private final LinkedList<TransactionService.LoanListener> listeners;
+    private Thread thread;
+
+    private static final class Reminder {
+        final Transaction transaction;
+        boolean dueSoonSent;
+
+        Reminder(Transaction transaction) {
+            this.transaction = transaction;
+            this.dueSoonSent = false;
+        }
+    }
+
+    LoanReminderScheduler(Clock clock, int dueSoonDays) {
+        this.clock = clock;
+        this.dueSoonDays = dueSoonDays;
+        this.reminders = new IndexedMinHeap<>();
+        this.listeners = new LinkedList<>();
+    }
+
+    // (Re)schedules both reminders for the loan from its current due date
+    synchronized void schedule(Transaction transaction) {
+        reminders.put(transaction.getKey(), transaction.getDueDate().toEpochDay() - dueSoonDays, new Reminder(transaction));
+        notifyAll();
+    }
+
+    synchronized void cancel(Transaction transaction) {
+        reminders.remove(transaction.getKey());
+    }
+
+    synchronized void addListener(TransactionService.LoanListener listener) {
+        listeners.add(listener);
+        if (thread == null) {
+            thread = new Thread(this::run, "loan-reminders");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    synchronized void removeListener(TransactionService.LoanListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void run() {
+        while (true) {
+            LinkedList<Transaction> dueSoon = new LinkedList<>();
+            LinkedList<Transaction> overdue = new LinkedList<>();
+            LinkedList<TransactionService.LoanListener> targets = new LinkedList<>();
+            synchronized (this) {
+                try {
+                    awaitDueReminders();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long today = LocalDate.now(clock).toEpochDay();
+                while (!reminders.isEmpty() && reminders.peekPriority() <= today) {
+                    Reminder reminder = reminders.peek();
+                    if (reminder.dueSoonSent) {
+                        overdue.add(reminder.transaction);
+                        reminders.poll();
+                    } else {
+                        // The overdue reminder follows on the day after the due date
+                        dueSoon.add(reminder.transaction);
+                        reminder.dueSoonSent = true;
+                        reminders.put(reminder.transaction.getKey(),
+                                reminder.transaction.getDueDate().toEpochDay() + 1, reminder);
+                    }
+                }
+                for (TransactionService.LoanListener listener : listeners) {
+                    targets.add(listener);
+                }
+            }
+
+            // Listeners run outside the lock so they may call back into the services
+            for (TransactionService.LoanListener listener : targets) {
+                for (Transaction transaction : dueSoon) {
+                    listener.onDueSoon(transaction);
+                }
+                for (Transaction transaction : overdue) {
+                    listener.onOverdue(transaction);
+                }
+            }
+        }
+    }
+
+    // Sleeps until the earliest reminder's day starts; woken early whenever the schedule changes
+    private void awaitDueReminders() throws InterruptedException {
+        while (true) {
+            if (reminders.isEmpty()) {
+                wait();
+                continue;
+            }
+            long fireAt = LocalDate.ofEpochDay(reminders.peekPriority())
+                    .atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+            long delay = fireAt - clock.millis();
+            if (delay <= 0) {
+                return;
+            }
+            wait(delay);
+        }
+    }
+}
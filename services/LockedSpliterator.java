@@ -0,0 +1,66 @@
+package services;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Lets a lazy stream over a service's structures outlive the call that created it: each
+// element is fetched under the service's read lock, but handed to the consumer only after
+// the lock is released, so downstream code may call back into any service. Writers can
+// run between elements; the source has to tolerate that, and a record removed in the
+// meantime comes back from its index lookup as null and is skipped.
+final class LockedSpliterator<T> implements Spliterator<T> {
+    private final Spliterator<T> source;
+    private final Lock lock;
+    private T current;
+
+    private LockedSpliterator(Spliterator<T> source, Lock lock) {
+        this.source = source;
+        this.lock = lock;
+    }
+
+    static <T> Stream<T> stream(Stream<T> source, Lock lock) {
+        return StreamSupport.stream(new LockedSpliterator<>(source.spliterator(), lock), false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        lock.lock();
+        try {
+            do {
+                if (!source.tryAdvance(element -> current = element)) {
+                    return false;
+                }
+            } while (current == null);
+        } finally {
+            lock.unlock();
+        }
+        T element = current;
+        current = null;
+        action.accept(element);
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return source.characteristics() & (ORDERED | DISTINCT | SORTED | NONNULL);
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return source.getComparator();
+    }
+}
@@ -0,0 +1,71 @@
+package services;
+
+import models.Book;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+// Times a full-catalog scanBooks() on fork-join pools of 1, 4 and 16 workers and prints
+// the speedup over one worker. A parallel stream runs in the pool its terminal operation
+// is invoked from, so each scan is submitted to a pool of that size. scanBooks only goes
+// parallel when the common pool has more than one thread, so on a machine with fewer
+// cores raise it too. Run from the project root:
+//   java -Djava.util.concurrent.ForkJoinPool.common.parallelism=16 services.ParallelScanBenchmark [books]
+public class ParallelScanBenchmark {
+    private static final int DEFAULT_BOOKS = 200_000;
+    private static final int[] WORKERS = {1, 4, 16};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        BookService service = new BookService();
+        Random random = new Random(11);
+        for (int i = 0; i < bookCount; i++) {
+            service.addBook(randomWords(random, 1 + random.nextInt(4)), randomWords(random, 2), "isbn-" + i,
+                    LocalDate.ofEpochDay(random.nextInt(20_000)), i % 3 == 0 ? "fiction" : "history");
+        }
+        // Case-insensitive substring tests, so each book costs some work rather than a field read
+        Predicate<Book> filter = book -> book.getTitle().toLowerCase().contains("qu")
+                || book.getAuthor().toLowerCase().contains("zy");
+
+        System.out.printf("%,d books, %d available processors, common pool parallelism %d%n",
+                bookCount, Runtime.getRuntime().availableProcessors(), ForkJoinPool.getCommonPoolParallelism());
+        double baseline = 0;
+        for (int workers : WORKERS) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                int matches = 0;
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    matches = pool.submit(() -> service.scanBooks(filter).size()).get();
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                if (workers == WORKERS[0]) {
+                    baseline = best;
+                }
+                System.out.printf("%2d workers: best of %d scans %6.1f ms, %,d matches, %.2fx speedup%n",
+                        workers, ROUNDS, best / 1e6, matches, baseline / best);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static String randomWords(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append((char) ('A' + random.nextInt(26)));
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -1,67 +1,178 @@
 package services;
 
+import datastructures.BKTree;
+import datastructures.BinarySearchTree;
+import datastructures.IntHashIndex;
 import datastructures.LinkedList;
+import datastructures.RadixTree;
+import datastructures.TrigramIndex;
+import models.EntityIds;
 import models.Patron;
+import utils.IdAllocator;
+import utils.TextNormalizer;
 
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Safe for concurrent use: queries share a read lock and changes take the write lock
 public class PatronService {
-    private LinkedList<Patron> patrons;
-    private int nextId;
+    private BinarySearchTree<Patron> patronsById; // pages of the patron list without walking it
+    private IntHashIndex<Patron> patronIndex;
+    private TrigramIndex nameTrigrams;
+    private RadixTree nameTerms;
+    private BKTree nameVocabulary;
+    private ReentrantReadWriteLock lock;
+    private IdAllocator ids;
 
     public PatronService() {
-        patrons = new LinkedList<>();
-        nextId = 1;
+        this(new IdAllocator());
+    }
+
+    public PatronService(IdAllocator ids) {
+        patronsById = new BinarySearchTree<>(Comparator.comparingInt(Patron::getKey));
+        patronIndex = new IntHashIndex<>();
+        nameTrigrams = new TrigramIndex();
+        nameTerms = new RadixTree();
+        nameVocabulary = new BKTree();
+        lock = new ReentrantReadWriteLock();
+        this.ids = ids;
     }
 
     public Patron addPatron(String name, String contactInfo, String address, String membershipDate) {
-        String id = "P" + String.format("%04d", nextId++);
-        Patron patron = new Patron(id, name, contactInfo, address, membershipDate);
-        patrons.add(patron);
-        return patron;
+        lock.writeLock().lock();
+        try {
+            Patron patron = new Patron(ids.nextId(), name, contactInfo, address, membershipDate);
+            patronsById.insert(patron);
+            patronIndex.put(patron.getKey(), patron);
+            indexName(patron);
+            return patron;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public boolean removePatron(String id) {
-        for (int i = 0; i < patrons.size(); i++) {
-            Patron patron = patrons.get(i);
-            if (patron.getId().equals(id)) {
-                patrons.remove(patron);
-                return true;
+        lock.writeLock().lock();
+        try {
+            Patron patron = patronIndex.remove(EntityIds.parse(EntityIds.PATRON, id));
+            if (patron == null) {
+                return false;
             }
+            patronsById.delete(patron);
+            unindexName(patron);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
 
     public Patron findPatronById(String id) {
-        for (int i = 0; i < patrons.size(); i++) {
-            Patron patron = patrons.get(i);
-            if (patron.getId().equals(id)) {
-                return patron;
-            }
+        return findPatronByKey(EntityIds.parse(EntityIds.PATRON, id));
+    }
+
+    public Patron findPatronByKey(int key) {
+        lock.readLock().lock();
+        try {
+            return patronIndex.get(key);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     public LinkedList<Patron> findPatronsByName(String name) {
-        LinkedList<Patron> result = new LinkedList<>();
-        for (int i = 0; i < patrons.size(); i++) {
-            Patron patron = patrons.get(i);
-            if (patron.getName().toLowerCase().contains(name.toLowerCase())) {
-                result.add(patron);
+        return streamPatronsByName(name).collect(LinkedList.collector());
+    }
+
+    // Matches are verified only as the stream is consumed
+    public Stream<Patron> streamPatronsByName(String name) {
+        lock.readLock().lock();
+        try {
+            return LockedSpliterator.stream(nameTrigrams.stream(TextNormalizer.normalize(name))
+                    .mapToObj(patronIndex::get), lock.readLock());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Patrons whose name words are each within maxDistance edits of a query word, closest first
+    public LinkedList<Patron> fuzzySearchPatronsByName(String name, int maxDistance) {
+        lock.readLock().lock();
+        try {
+            LinkedList<Patron> result = new LinkedList<>();
+            for (int key : FuzzyQuery.search(nameVocabulary, name, maxDistance, nameTerms)) {
+                result.add(patronIndex.get(key));
             }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
+    private void indexName(Patron patron) {
+        nameTrigrams.add(patron.getKey(), patron.getNameKey());
+        for (String token : TextNormalizer.tokenize(patron.getNameKey())) {
+            nameTerms.add(token, patron.getKey());
+            nameVocabulary.add(token);
+        }
+    }
+
+    private void unindexName(Patron patron) {
+        nameTrigrams.remove(patron.getKey());
+        for (String token : TextNormalizer.tokenize(patron.getNameKey())) {
+            nameTerms.remove(token, patron.getKey());
+            nameVocabulary.remove(token);
+        }
+    }
+
+    // A copy, so callers can iterate it while patrons are added and removed
     public LinkedList<Patron> getAllPatrons() {
-        return patrons;
+        lock.readLock().lock();
+        try {
+            LinkedList<Patron> result = new LinkedList<>();
+            patronsById.inorderTraversal(result::add);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public void updatePatron(Patron updatedPatron) {
-        Patron existingPatron = findPatronById(updatedPatron.getId());
-        if (existingPatron != null) {
-            existingPatron.setName(updatedPatron.getName());
-            existingPatron.setContactInfo(updatedPatron.getContactInfo());
-            existingPatron.setAddress(updatedPatron.getAddress());
-            existingPatron.setMembershipDate(updatedPatron.getMembershipDate());
+    public int getPatronCount() {
+        lock.readLock().lock();
+        try {
+            return patronsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One page of patrons in ID order, as BookService.getBooksPage
+    public LinkedList<Patron> getPatronsPage(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return patronsById.range(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Compare-and-set edit, as in BookService.updateBook
+    public UpdateResult updatePatron(int key, long expectedVersion, Patron.Details edited) {
+        lock.writeLock().lock();
+        try {
+            Patron existingPatron = patronIndex.get(key);
+            if (existingPatron == null) {
+                return UpdateResult.NOT_FOUND;
+            }
+            if (existingPatron.getVersion() != expectedVersion) {
+                return UpdateResult.CONFLICT;
+            }
+            unindexName(existingPatron);
+            existingPatron.update(expectedVersion, edited);
+            indexName(existingPatron);
+            return UpdateResult.UPDATED;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 } 
\ No newline at end of file
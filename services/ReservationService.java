@@ -1,198 +1,286 @@
 package services;
 
+import datastructures.BinarySearchTree;
+import datastructures.FenwickTree;
+import datastructures.IntHashIndex;
 import datastructures.LinkedList;
 import datastructures.Queue;
 import models.Book;
+import models.EntityIds;
 import models.Patron;
 import models.Reservation;
+import utils.IdAllocator;
 
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+// Safe for concurrent use: queries share a read lock and changes take the write lock
 public class ReservationService {
     private LinkedList<Reservation> reservations;
-    private Map<String, Queue<Reservation>> reservationQueues; // Book ID -> Queue of reservations
+    private IntHashIndex<Reservation> reservationIndex;
+    private BinarySearchTree<Reservation> activeReservations; // by key
+    private IntHashIndex<Queue<Reservation>> reservationQueues; // Book key -> Queue of reservations
+    private IntHashIndex<FenwickTree> waitingTickets; // Book key -> 1 per queue ticket still waiting
+    private IntHashIndex<LinkedList<Reservation>> patronReservations; // Patron key -> active reservations
     private BookService bookService;
     private PatronService patronService;
-    private int nextId;
+    private ReentrantReadWriteLock lock;
+    private IdAllocator ids;
 
     public ReservationService(BookService bookService, PatronService patronService) {
+        this(bookService, patronService, new IdAllocator());
+    }
+
+    public ReservationService(BookService bookService, PatronService patronService, IdAllocator ids) {
         this.reservations = new LinkedList<>();
-        this.reservationQueues = new HashMap<>();
+        this.reservationIndex = new IntHashIndex<>();
+        this.activeReservations = new BinarySearchTree<>(Comparator.comparingInt(Reservation::getKey));
+        this.reservationQueues = new IntHashIndex<>();
+        this.waitingTickets = new IntHashIndex<>();
+        this.patronReservations = new IntHashIndex<>();
         this.bookService = bookService;
         this.patronService = patronService;
-        this.nextId = 1;
+        this.lock = new ReentrantReadWriteLock();
+        this.ids = ids;
     }
 
     public Reservation reserveBook(String bookId, String patronId) {
-        Book book = bookService.findBookById(bookId);
-        Patron patron = patronService.findPatronById(patronId);
+        lock.writeLock().lock();
+        try {
+            Book book = bookService.findBookById(bookId);
+            Patron patron = patronService.findPatronById(patronId);
 
-        if (book == null || patron == null) {
-            return null;
-        }
+            if (book == null || patron == null) {
+                return null;
+            }
 
-        // Check if patron already has a reservation for this book
-        for (int i = 0; i < reservations.size(); i++) {
-            Reservation existing = reservations.get(i);
-            if (existing.isActive() && existing.getBookId().equals(bookId) && existing.getPatronId().equals(patronId)) {
+            // Check if patron already has a reservation for this book
+            Reservation existing = findActiveReservation(book.getKey(), patron.getKey());
+            if (existing != null) {
                 return existing; // Already reserved
             }
-        }
 
-        String id = "R" + String.format("%04d", nextId++);
-        Reservation reservation = new Reservation(id, bookId, patronId, LocalDate.now());
-        reservations.add(reservation);
+            Queue<Reservation> queue = reservationQueues.get(book.getKey());
+            if (queue == null) {
+                queue = new Queue<>();
+                reservationQueues.put(book.getKey(), queue);
+                waitingTickets.put(book.getKey(), new FenwickTree());
+            }
+            LinkedList<Reservation> active = patronReservations.get(patron.getKey());
+            if (active == null) {
+                active = new LinkedList<>();
+                patronReservations.put(patron.getKey(), active);
+            }
 
-        // Add to the queue for this book
-        if (!reservationQueues.containsKey(bookId)) {
-            reservationQueues.put(bookId, new Queue<>());
-        }
-        reservationQueues.get(bookId).enqueue(reservation);
+            Reservation reservation = new Reservation(ids.nextId(), book.getKey(), patron.getKey(), LocalDate.now());
+            reservations.add(reservation);
+            reservationIndex.put(reservation.getKey(), reservation);
+            activeReservations.insert(reservation);
+            reservation.setQueueTicket(queue.enqueue(reservation));
+            waitingTickets.get(book.getKey()).add(reservation.getQueueTicket(), 1);
+            active.add(reservation);
 
-        return reservation;
+            return reservation;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public boolean cancelReservation(String reservationId) {
-        Reservation reservation = findReservationById(reservationId);
-        if (reservation == null || !reservation.isActive()) {
-            return false;
-        }
-
-        reservation.setActive(false);
-        
-        // Remove from queue (we'll need to rebuild it)
-        String bookId = reservation.getBookId();
-        if (reservationQueues.containsKey(bookId)) {
-            Queue<Reservation> oldQueue = reservationQueues.get(bookId);
-            Queue<Reservation> newQueue = new Queue<>();
-            
-            while (!oldQueue.isEmpty()) {
-                Reservation r = oldQueue.dequeue();
-                if (!r.getId().equals(reservationId) && r.isActive()) {
-                    newQueue.enqueue(r);
-                }
+        lock.writeLock().lock();
+        try {
+            Reservation reservation = findReservationById(reservationId);
+            if (reservation == null || !reservation.isActive()) {
+                return false;
             }
-            reservationQueues.put(bookId, newQueue);
+
+            reservation.setActive(false);
+            leaveQueue(reservation);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        
-        return true;
     }
 
     public Reservation getNextReservation(String bookId) {
-        if (!reservationQueues.containsKey(bookId) || reservationQueues.get(bookId).isEmpty()) {
-            return null;
+        lock.readLock().lock();
+        try {
+            Queue<Reservation> queue = reservationQueues.get(EntityIds.parse(EntityIds.BOOK, bookId));
+            if (queue == null || queue.isEmpty()) {
+                return null;
+            }
+            return queue.peek();
+        } finally {
+            lock.readLock().unlock();
         }
-        return reservationQueues.get(bookId).peek();
     }
 
     public boolean fulfillReservation(String reservationId) {
-        Reservation reservation = findReservationById(reservationId);
-        if (reservation == null || !reservation.isActive()) {
-            return false;
+        lock.writeLock().lock();
+        try {
+            Reservation reservation = findReservationById(reservationId);
+            if (reservation == null || !reservation.isActive()) {
+                return false;
+            }
+
+            Book book = bookService.findBookByKey(reservation.getBookKey());
+            if (book == null || !book.isAvailable()) {
+                return false;
+            }
+
+            reservation.setActive(false);
+            leaveQueue(reservation);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        Book book = bookService.findBookById(reservation.getBookId());
-        if (book == null || !book.isAvailable()) {
-            return false;
+    // Cancels the reservation's queue slot in place; the rest of the queue is untouched
+    private void leaveQueue(Reservation reservation) {
+        activeReservations.delete(reservation);
+        Queue<Reservation> queue = reservationQueues.get(reservation.getBookKey());
+        if (queue != null && queue.cancel(reservation.getQueueTicket())) {
+            FenwickTree waiting = waitingTickets.get(reservation.getBookKey());
+            waiting.add(reservation.getQueueTicket(), -1);
+            if (queue.isEmpty()) {
+                // Nobody is waiting, so the next reservation starts a fresh queue at ticket 0
+                reservationQueues.remove(reservation.getBookKey());
+                waitingTickets.remove(reservation.getBookKey());
+            } else if (queue.firstTicket() - waiting.base() > waiting.capacity() / 2) {
+                // Tickets keep rising, so drop those ahead of the queue once they fill half the tree
+                waiting.rebase(queue.firstTicket());
+            }
+        }
+        LinkedList<Reservation> active = patronReservations.get(reservation.getPatronKey());
+        if (active != null) {
+            active.remove(reservation);
         }
+    }
 
-        // Cancel the reservation
-        reservation.setActive(false);
-        
-        // Remove from queue
-        String bookId = reservation.getBookId();
-        if (reservationQueues.containsKey(bookId) && !reservationQueues.get(bookId).isEmpty()) {
-            reservationQueues.get(bookId).dequeue();
+    public Reservation findActiveReservation(String bookId, String patronId) {
+        lock.readLock().lock();
+        try {
+            return findActiveReservation(EntityIds.parse(EntityIds.BOOK, bookId),
+                    EntityIds.parse(EntityIds.PATRON, patronId));
+        } finally {
+            lock.readLock().unlock();
         }
-        
-        return true;
     }
 
-    public Reservation findReservationById(String id) {
-        for (int i = 0; i < reservations.size(); i++) {
-            Reservation reservation = reservations.get(i);
-            if (reservation.getId().equals(id)) {
-                return reservation;
+    private Reservation findActiveReservation(int bookKey, int patronKey) {
+        LinkedList<Reservation> active = patronReservations.get(patronKey);
+        if (active != null) {
+            for (Reservation reservation : active) {
+                if (reservation.getBookKey() == bookKey) {
+                    return reservation;
+                }
             }
         }
         return null;
     }
 
-    public LinkedList<Reservation> getAllReservations() {
-        return reservations;
+    public Reservation findReservationById(String id) {
+        return findReservationByKey(EntityIds.parse(EntityIds.RESERVATION, id));
     }
 
-    public LinkedList<Reservation> getActiveReservations() {
-        LinkedList<Reservation> active = new LinkedList<>();
-        for (int i = 0; i < reservations.size(); i++) {
-            Reservation reservation = reservations.get(i);
-            if (reservation.isActive()) {
-                active.add(reservation);
+    public Reservation findReservationByKey(int key) {
+        lock.readLock().lock();
+        try {
+            return reservationIndex.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A copy, so callers can iterate it while reservations are made
+    public LinkedList<Reservation> getAllReservations() {
+        lock.readLock().lock();
+        try {
+            LinkedList<Reservation> result = new LinkedList<>();
+            for (Reservation reservation : reservations) {
+                result.add(reservation);
             }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return active;
+    }
+
+    public LinkedList<Reservation> getActiveReservations() {
+        return streamActiveReservations().collect(LinkedList.collector());
+    }
+
+    // Active reservations in key order, read lazily from the active tree rather than the whole
+    // history. Each step re-seeks the tree under the read lock, so reservations made or
+    // cancelled while the stream is consumed are tolerated.
+    public Stream<Reservation> streamActiveReservations() {
+        Stream<Reservation> active = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                activeReservations.seekingIterator(null, null),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+        return LockedSpliterator.stream(active, lock.readLock());
     }
 
     public LinkedList<Reservation> getReservationsByPatronId(String patronId) {
-        LinkedList<Reservation> patronReservations = new LinkedList<>();
-        for (int i = 0; i < reservations.size(); i++) {
-            Reservation reservation = reservations.get(i);
-            if (reservation.getPatronId().equals(patronId) && reservation.isActive()) {
-                patronReservations.add(reservation);
+        lock.readLock().lock();
+        try {
+            LinkedList<Reservation> result = new LinkedList<>();
+            LinkedList<Reservation> active = patronReservations.get(EntityIds.parse(EntityIds.PATRON, patronId));
+            if (active != null) {
+                for (Reservation reservation : active) {
+                    result.add(reservation);
+                }
             }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return patronReservations;
     }
 
     public LinkedList<Reservation> getReservationsByBookId(String bookId) {
-        LinkedList<Reservation> bookReservations = new LinkedList<>();
-        if (reservationQueues.containsKey(bookId)) {
-            Queue<Reservation> queue = reservationQueues.get(bookId);
-            // We need to copy the queue to not modify it
-            Queue<Reservation> tempQueue = new Queue<>();
-            
-            while (!queue.isEmpty()) {
-                Reservation r = queue.dequeue();
-                bookReservations.add(r);
-                tempQueue.enqueue(r);
+        lock.readLock().lock();
+        try {
+            LinkedList<Reservation> bookReservations = new LinkedList<>();
+            Queue<Reservation> queue = reservationQueues.get(EntityIds.parse(EntityIds.BOOK, bookId));
+            if (queue != null) {
+                for (Reservation reservation : queue) {
+                    bookReservations.add(reservation);
+                }
             }
-            
-            // Restore the queue
-            reservationQueues.put(bookId, tempQueue);
+            return bookReservations;
+        } finally {
+            lock.readLock().unlock();
         }
-        return bookReservations;
     }
 
     public int getQueuePosition(String bookId, String patronId) {
-        if (!reservationQueues.containsKey(bookId)) {
-            return -1;
+        lock.readLock().lock();
+        try {
+            Reservation reservation = findActiveReservation(EntityIds.parse(EntityIds.BOOK, bookId),
+                    EntityIds.parse(EntityIds.PATRON, patronId));
+            return reservation == null ? -1 : getQueuePosition(reservation);
+        } finally {
+            lock.readLock().unlock();
         }
-        
-        Queue<Reservation> queue = reservationQueues.get(bookId);
-        Queue<Reservation> tempQueue = new Queue<>();
-        int position = 1;
-        boolean found = false;
-        
-        while (!queue.isEmpty()) {
-            Reservation r = queue.dequeue();
-            if (r.getPatronId().equals(patronId) && r.isActive()) {
-                found = true;
-                break;
+    }
+
+    // 1-based place in the book's queue, or -1 once the reservation has left it.
+    // Counts the tickets still waiting up to this one, so it is O(log n) in the queue length.
+    public int getQueuePosition(Reservation reservation) {
+        lock.readLock().lock();
+        try {
+            if (!reservation.isActive()) {
+                return -1;
             }
-            tempQueue.enqueue(r);
-            position++;
-        }
-        
-        // Restore the remaining items
-        while (!queue.isEmpty()) {
-            tempQueue.enqueue(queue.dequeue());
+            FenwickTree waiting = waitingTickets.get(reservation.getBookKey());
+            return waiting == null ? -1 : (int) waiting.prefixSum(reservation.getQueueTicket());
+        } finally {
+            lock.readLock().unlock();
         }
-        
-        // Restore the queue
-        reservationQueues.put(bookId, tempQueue);
-        
-        return found ? position : -1;
     }
-} 
\ No newline at end of file
+}
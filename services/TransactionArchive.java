@@ -0,0 +1,203 @@
+package services;
+
+import datastructures.IntHashIndex;
+import models.Transaction;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Append-only store for returned loans. Returns land in an open segment of live objects,
+// hashed by key; a full segment is sealed by sorting it by key and packing it into
+// primitive columns, after which its Transaction objects are garbage. Sealed segments
+// are merged by size tier, like a binary counter: the two newest are merged while the
+// older one is at most twice the size of the newer. Each loan is therefore rewritten
+// O(log n) times and there are O(log n) segments to binary search on a lookup.
+// Archived loans are immutable: reads materialize a fresh Transaction from the columns.
+final class TransactionArchive {
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int MERGE_RATIO = 2; // merge the newest two while older <= ratio * newer
+
+    private Transaction[] open;
+    private IntHashIndex<Transaction> openIndex;
+    private int openCount;
+    private Segment[] sealed; // oldest and largest first
+    private int sealedCount;
+
+    private static final class Segment {
+        final int[] keys;
+        final int[] bookKeys;
+        final int[] patronKeys;
+        final int[] borrowDays; // epoch days
+        final int[] dueDays;
+        final int[] returnDays;
+
+        Segment(int size) {
+            keys = new int[size];
+            bookKeys = new int[size];
+            patronKeys = new int[size];
+            borrowDays = new int[size];
+            dueDays = new int[size];
+            returnDays = new int[size];
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        int indexOf(int key) {
+            if (keys.length == 0 || key < keys[0] || key > keys[keys.length - 1]) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? -1 : index;
+        }
+
+        void copy(int from, Segment target, int to) {
+            target.keys[to] = keys[from];
+            target.bookKeys[to] = bookKeys[from];
+            target.patronKeys[to] = patronKeys[from];
+            target.borrowDays[to] = borrowDays[from];
+            target.dueDays[to] = dueDays[from];
+            target.returnDays[to] = returnDays[from];
+        }
+
+        Transaction materialize(int index) {
+            return new Transaction(keys[index], bookKeys[index], patronKeys[index],
+                    LocalDate.ofEpochDay(borrowDays[index]), LocalDate.ofEpochDay(dueDays[index]),
+                    LocalDate.ofEpochDay(returnDays[index]));
+        }
+    }
+
+    TransactionArchive() {
+        open = new Transaction[SEGMENT_SIZE];
+        openIndex = new IntHashIndex<>(SEGMENT_SIZE);
+        openCount = 0;
+        sealed = new Segment[8];
+        sealedCount = 0;
+    }
+
+    void append(Transaction transaction) {
+        if (!transaction.isReturned()) {
+            throw new IllegalArgumentException("Only returned transactions can be archived");
+        }
+        open[openCount++] = transaction;
+        openIndex.put(transaction.getKey(), transaction);
+        if (openCount == SEGMENT_SIZE) {
+            seal();
+        }
+    }
+
+    Transaction find(int key) {
+        Transaction transaction = openIndex.get(key);
+        if (transaction != null) {
+            return transaction;
+        }
+        for (int i = sealedCount - 1; i >= 0; i--) {
+            int index = sealed[i].indexOf(key);
+            if (index >= 0) {
+                return sealed[i].materialize(index);
+            }
+        }
+        return null;
+    }
+
+    // Visits every archived loan; sealed segments first, in no particular overall order
+    void forEach(Consumer<Transaction> action) {
+        for (int i = 0; i < sealedCount; i++) {
+            Segment segment = sealed[i];
+            for (int j = 0; j < segment.size(); j++) {
+                action.accept(segment.materialize(j));
+            }
+        }
+        for (int i = 0; i < openCount; i++) {
+            action.accept(open[i]);
+        }
+    }
+
+    int size() {
+        int size = openCount;
+        for (int i = 0; i < sealedCount; i++) {
+            size += sealed[i].size();
+        }
+        return size;
+    }
+
+    // Seals the open segment and merges every sealed segment into one
+    void compact() {
+        if (openCount > 0) {
+            seal();
+        }
+        while (sealedCount > 1) {
+            mergeNewest();
+        }
+    }
+
+    private void seal() {
+        Segment segment = new Segment(openCount);
+        for (int i = 0; i < openCount; i++) {
+            Transaction transaction = open[i];
+            segment.keys[i] = transaction.getKey();
+            segment.bookKeys[i] = transaction.getBookKey();
+            segment.patronKeys[i] = transaction.getPatronKey();
+            segment.borrowDays[i] = (int) transaction.getBorrowDate().toEpochDay();
+            segment.dueDays[i] = (int) transaction.getDueDate().toEpochDay();
+            segment.returnDays[i] = (int) transaction.getReturnDate().toEpochDay();
+        }
+        Arrays.fill(open, 0, openCount, null);
+        openIndex = new IntHashIndex<>(SEGMENT_SIZE);
+        openCount = 0;
+
+        if (sealedCount == sealed.length) {
+            sealed = Arrays.copyOf(sealed, sealedCount * 2);
+        }
+        // Returns arrive out of key order, so sort before the segment becomes searchable
+        sealed[sealedCount++] = sort(segment);
+        while (sealedCount > 1 && sealed[sealedCount - 2].size() <= MERGE_RATIO * sealed[sealedCount - 1].size()) {
+            mergeNewest();
+        }
+    }
+
+    private void mergeNewest() {
+        Segment merged = merge(sealed[sealedCount - 2], sealed[sealedCount - 1]);
+        sealed[--sealedCount] = null;
+        sealed[sealedCount - 1] = merged;
+    }
+
+    // Reorders the segment by key by sorting (key, position) pairs packed into longs
+    private static Segment sort(Segment segment) {
+        long[] order = new long[segment.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = ((long) segment.keys[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        Segment result = new Segment(order.length);
+        for (int i = 0; i < order.length; i++) {
+            segment.copy((int) order[i], result, i);
+        }
+        return result;
+    }
+
+    // Linear merge of two segments already in key order
+    private static Segment merge(Segment first, Segment second) {
+        Segment result = new Segment(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < first.size() && j < second.size()) {
+            if (first.keys[i] <= second.keys[j]) {
+                first.copy(i++, result, position++);
+            } else {
+                second.copy(j++, result, position++);
+            }
+        }
+        while (i < first.size()) {
+            first.copy(i++, result, position++);
+        }
+        while (j < second.size()) {
+            second.copy(j++, result, position++);
+        }
+        return result;
+    }
+}
@@ -1,118 +1,328 @@
 package services;
 
+import datastructures.IndexedMinHeap;
+import datastructures.IntHashIndex;
+import datastructures.IntList;
 import datastructures.LinkedList;
 import models.Book;
+import models.EntityIds;
 import models.Patron;
 import models.Transaction;
+import utils.IdAllocator;
+import utils.StripedLocks;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+// Open loans live in a hot hash index; returned loans move to an append-only archive,
+// so queries about current loans scale with the number of open loans, not all history.
+// Safe for concurrent use. A borrow or return holds the book's and the patron's lock
+// stripes for its whole check-then-act, and the borrow histories are partitioned by those
+// same stripes. The shared loan index, due-date heap and archive are guarded by the
+// service lock, whose write side a borrow or return takes only for a few index updates,
+// so desks lending different books run side by side.
 public class TransactionService {
-    private LinkedList<Transaction> transactions;
+    private static final int DUE_SOON_DAYS = 2;
+    private static final int LOCK_STRIPES = 64;
+
+    private IntHashIndex<Transaction> activeLoans;
+    private IndexedMinHeap<Transaction> loansByDueDate; // Open loans by due date in epoch days
+    private LoanReminderScheduler reminders;
+    private TransactionArchive archive;
+    private IntHashIndex<IntList>[] transactionsByPatron; // by patron stripe: patron key -> transaction keys, oldest first
+    private IntHashIndex<IntList>[] transactionsByBook; // by book stripe: book key -> transaction keys, oldest first
     private BookService bookService;
     private PatronService patronService;
-    private int nextId;
+    private StripedLocks bookLocks;
+    private StripedLocks patronLocks;
+    private ReentrantReadWriteLock lock;
+    private IdAllocator ids;
+
+    public interface LoanListener {
+        void onDueSoon(Transaction transaction);
+
+        void onOverdue(Transaction transaction);
+    }
 
     public TransactionService(BookService bookService, PatronService patronService) {
-        this.transactions = new LinkedList<>();
+        this(bookService, patronService, new IdAllocator());
+    }
+
+    public TransactionService(BookService bookService, PatronService patronService, IdAllocator ids) {
+        this(bookService, patronService, ids, new StripedLocks(LOCK_STRIPES), new StripedLocks(LOCK_STRIPES));
+    }
+
+    // Callers that lock books and patrons themselves pass their stripes in, so loans and
+    // their own operations on a book or patron exclude each other
+    public TransactionService(BookService bookService, PatronService patronService, IdAllocator ids,
+                              StripedLocks bookLocks, StripedLocks patronLocks) {
+        this.activeLoans = new IntHashIndex<>();
+        this.loansByDueDate = new IndexedMinHeap<>();
+        this.reminders = new LoanReminderScheduler(Clock.systemDefaultZone(), DUE_SOON_DAYS);
+        this.archive = new TransactionArchive();
+        this.transactionsByPatron = partitions(patronLocks.size());
+        this.transactionsByBook = partitions(bookLocks.size());
         this.bookService = bookService;
         this.patronService = patronService;
-        this.nextId = 1;
+        this.bookLocks = bookLocks;
+        this.patronLocks = patronLocks;
+        this.lock = new ReentrantReadWriteLock();
+        this.ids = ids;
     }
 
     public Transaction borrowBook(String bookId, String patronId, int daysToReturn) {
-        Book book = bookService.findBookById(bookId);
-        Patron patron = patronService.findPatronById(patronId);
+        int bookKey = EntityIds.parse(EntityIds.BOOK, bookId);
+        int patronKey = EntityIds.parse(EntityIds.PATRON, patronId);
+        return bookLocks.withKeys(bookKey, patronLocks, patronKey, () -> {
+            Book book = bookService.findBookByKey(bookKey);
+            Patron patron = patronService.findPatronByKey(patronKey);
 
-        if (book == null || patron == null) {
-            return null;
-        }
+            if (book == null || patron == null) {
+                return null;
+            }
 
-        if (!book.isAvailable()) {
-            return null;
-        }
+            // Only a desk holding this book's stripe lends it, so the check cannot go stale
+            if (!book.isAvailable()) {
+                return null;
+            }
 
-        String id = "T" + String.format("%04d", nextId++);
-        LocalDate borrowDate = LocalDate.now();
-        LocalDate dueDate = borrowDate.plusDays(daysToReturn);
-        Transaction transaction = new Transaction(id, bookId, patronId, borrowDate, dueDate);
-        
-        transactions.add(transaction);
-        bookService.updateBookAvailability(bookId, false);
-        
-        return transaction;
+            LocalDate borrowDate = LocalDate.now();
+            LocalDate dueDate = borrowDate.plusDays(daysToReturn);
+            Transaction transaction = new Transaction(ids.nextId(), bookKey, patronKey, borrowDate, dueDate);
+
+            lock.writeLock().lock();
+            try {
+                activeLoans.put(transaction.getKey(), transaction);
+                trackDueDate(transaction);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // Both stripes are held, so each history is appended in borrow order
+            postingList(transactionsByPatron[patronLocks.stripeOf(patronKey)], patronKey).add(transaction.getKey());
+            postingList(transactionsByBook[bookLocks.stripeOf(bookKey)], bookKey).add(transaction.getKey());
+            bookService.updateBookAvailability(bookKey, false);
+
+            return transaction;
+        });
     }
 
     public boolean returnBook(String transactionId) {
-        Transaction transaction = findTransactionById(transactionId);
-        
-        if (transaction == null || transaction.isReturned()) {
+        Transaction found = findTransactionById(transactionId);
+        if (found == null) {
             return false;
         }
-        
-        transaction.setReturnDate(LocalDate.now());
-        bookService.updateBookAvailability(transaction.getBookId(), true);
-        
-        return true;
+        return bookLocks.withKeys(found.getBookKey(), patronLocks, found.getPatronKey(), () -> {
+            // Another desk may have returned it while this one waited for the stripes
+            Transaction transaction = findActiveLoan(found.getKey());
+            if (transaction == null) {
+                return false;
+            }
+
+            lock.writeLock().lock();
+            try {
+                activeLoans.remove(transaction.getKey());
+                loansByDueDate.remove(transaction.getKey());
+                archive.append(transaction.returnedOn(LocalDate.now()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            reminders.cancel(transaction);
+            bookService.updateBookAvailability(transaction.getBookKey(), true);
+
+            return true;
+        });
+    }
+
+    private Transaction findActiveLoan(int key) {
+        lock.readLock().lock();
+        try {
+            return activeLoans.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public Transaction findTransactionById(String id) {
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            if (transaction.getId().equals(id)) {
-                return transaction;
-            }
+        return findTransactionByKey(EntityIds.parse(EntityIds.TRANSACTION, id));
+    }
+
+    public Transaction findTransactionByKey(int key) {
+        lock.readLock().lock();
+        try {
+            Transaction transaction = activeLoans.get(key);
+            return transaction != null ? transaction : archive.find(key);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     public LinkedList<Transaction> getAllTransactions() {
-        return transactions;
+        lock.readLock().lock();
+        try {
+            Transaction[] all = new Transaction[activeLoans.size() + archive.size()];
+            int[] count = {0};
+            activeLoans.forEach((key, transaction) -> all[count[0]++] = transaction);
+            archive.forEach(transaction -> all[count[0]++] = transaction);
+            return inKeyOrder(all, count[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public LinkedList<Transaction> getActiveTransactions() {
-        LinkedList<Transaction> active = new LinkedList<>();
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            if (!transaction.isReturned()) {
-                active.add(transaction);
-            }
+        lock.readLock().lock();
+        try {
+            Transaction[] active = new Transaction[activeLoans.size()];
+            int[] count = {0};
+            activeLoans.forEach((key, transaction) -> active[count[0]++] = transaction);
+            return inKeyOrder(active, count[0]);
+        } finally {
+            lock.readLock().unlock();
         }
-        return active;
     }
 
-    public LinkedList<Transaction> getTransactionsByPatronId(String patronId) {
-        LinkedList<Transaction> patronTransactions = new LinkedList<>();
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            if (transaction.getPatronId().equals(patronId)) {
-                patronTransactions.add(transaction);
-            }
+    // Packs returned loans into sorted columnar segments to bound the history footprint
+    public void compactArchive() {
+        lock.writeLock().lock();
+        try {
+            archive.compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private LinkedList<Transaction> inKeyOrder(Transaction[] transactions, int count) {
+        Arrays.sort(transactions, 0, count, Comparator.comparingInt(Transaction::getKey));
+        LinkedList<Transaction> result = new LinkedList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(transactions[i]);
         }
-        return patronTransactions;
+        return result;
+    }
+
+    public LinkedList<Transaction> getTransactionsByPatronId(String patronId) {
+        return patronHistory(patronId, 0, Integer.MAX_VALUE, false);
     }
 
     public LinkedList<Transaction> getTransactionsByBookId(String bookId) {
-        LinkedList<Transaction> bookTransactions = new LinkedList<>();
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            if (transaction.getBookId().equals(bookId)) {
-                bookTransactions.add(transaction);
+        return bookHistory(bookId, 0, Integer.MAX_VALUE, false);
+    }
+
+    // One page of a patron's history, most recent first
+    public LinkedList<Transaction> getTransactionsByPatronId(String patronId, int offset, int limit) {
+        return patronHistory(patronId, offset, limit, true);
+    }
+
+    public LinkedList<Transaction> getTransactionsByBookId(String bookId, int offset, int limit) {
+        return bookHistory(bookId, offset, limit, true);
+    }
+
+    private LinkedList<Transaction> patronHistory(String patronId, int offset, int limit, boolean recentFirst) {
+        int patronKey = EntityIds.parse(EntityIds.PATRON, patronId);
+        ReentrantLock stripe = patronLocks.forKey(patronKey);
+        stripe.lock();
+        try {
+            return collect(transactionsByPatron[patronLocks.stripeOf(patronKey)].get(patronKey), offset, limit, recentFirst);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private LinkedList<Transaction> bookHistory(String bookId, int offset, int limit, boolean recentFirst) {
+        int bookKey = EntityIds.parse(EntityIds.BOOK, bookId);
+        ReentrantLock stripe = bookLocks.forKey(bookKey);
+        stripe.lock();
+        try {
+            return collect(transactionsByBook[bookLocks.stripeOf(bookKey)].get(bookKey), offset, limit, recentFirst);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static IntHashIndex<IntList>[] partitions(int count) {
+        IntHashIndex<IntList>[] partitions = new IntHashIndex[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new IntHashIndex<>();
+        }
+        return partitions;
+    }
+
+    private IntList postingList(IntHashIndex<IntList> index, int key) {
+        IntList keys = index.get(key);
+        if (keys == null) {
+            keys = new IntList();
+            index.put(key, keys);
+        }
+        return keys;
+    }
+
+    private LinkedList<Transaction> collect(IntList keys, int offset, int limit, boolean recentFirst) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        LinkedList<Transaction> result = new LinkedList<>();
+        if (keys != null) {
+            for (int i = offset; i < keys.size() && result.size() < limit; i++) {
+                result.add(findTransactionByKey(keys.get(recentFirst ? keys.size() - 1 - i : i)));
             }
         }
-        return bookTransactions;
+        return result;
     }
 
+    // Open loans past their due date, most overdue first
     public LinkedList<Transaction> getOverdueTransactions() {
-        LinkedList<Transaction> overdue = new LinkedList<>();
-        LocalDate today = LocalDate.now();
-        
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction transaction = transactions.get(i);
-            if (!transaction.isReturned() && transaction.getDueDate().isBefore(today)) {
-                overdue.add(transaction);
+        lock.readLock().lock();
+        try {
+            long today = LocalDate.now().toEpochDay();
+            Transaction[] overdue = new Transaction[loansByDueDate.size()];
+            int[] count = {0};
+            loansByDueDate.forEachBelow(today, (key, dueDay, transaction) -> overdue[count[0]++] = transaction);
+            Arrays.sort(overdue, 0, count[0], Comparator.comparing(Transaction::getDueDate)
+                    .thenComparingInt(Transaction::getKey));
+            LinkedList<Transaction> result = new LinkedList<>();
+            for (int i = 0; i < count[0]; i++) {
+                result.add(overdue[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean changeDueDate(String transactionId, LocalDate dueDate) {
+        lock.writeLock().lock();
+        try {
+            Transaction transaction = activeLoans.get(EntityIds.parse(EntityIds.TRANSACTION, transactionId));
+            if (transaction == null || dueDate == null) {
+                return false;
             }
+            Transaction moved = transaction.withDueDate(dueDate);
+            activeLoans.put(moved.getKey(), moved);
+            trackDueDate(moved);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return overdue;
     }
-} 
\ No newline at end of file
+
+    // Listeners hear about loans coming due and going overdue on a background thread,
+    // which is started by the first registration
+    public void addLoanListener(LoanListener listener) {
+        reminders.addListener(listener);
+    }
+
+    public void removeLoanListener(LoanListener listener) {
+        reminders.removeListener(listener);
+    }
+
+    // Callers hold the write lock; put replaces the entry an earlier version of the loan left
+    private void trackDueDate(Transaction transaction) {
+        loansByDueDate.put(transaction.getKey(), transaction.getDueDate().toEpochDay(), transaction);
+        reminders.schedule(transaction);
+    }
+}
@@ -0,0 +1,9 @@
+package services;
+
+// Outcome of a compare-and-set edit of a book or patron
+public enum UpdateResult {
+    UPDATED,
+    NOT_FOUND,
+    CONFLICT, // the record changed after the caller read it; nothing was written
+    INVALID // the edit was rejected, e.g. an unparseable date
+}
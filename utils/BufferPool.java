@@ -0,0 +1,39 @@
+package utils;
+
+import java.nio.ByteBuffer;
+
+// Recycles direct buffers of one size. Direct buffers are slow to allocate and are only
+// freed by the garbage collector, so connections borrow one while they have bytes in
+// flight and give it back when idle. Not thread-safe: each pool belongs to one thread.
+public final class BufferPool {
+    private final int bufferSize;
+    private final ByteBuffer[] free;
+    private int count;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ByteBuffer[maxPooled];
+        this.count = 0;
+    }
+
+    public ByteBuffer acquire() {
+        if (count == 0) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        ByteBuffer buffer = free[--count];
+        free[count] = null;
+        return buffer;
+    }
+
+    // Buffers beyond the pool's capacity are dropped for the collector
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (count < free.length) {
+            free[count++] = buffer;
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
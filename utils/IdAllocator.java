@@ -0,0 +1,82 @@
+package utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out unique int keys from one shared atomic counter, so keys are dense and in
+// allocation order. An increment is all a key costs; there are no per-thread blocks, which
+// would waste most of a block for every short-lived (virtual) request thread.
+//
+// With a state file, the allocator records a high-water mark that is always above every
+// key handed out, written before the keys it covers are used. A restart resumes from the
+// mark, so keys are never reused; the mark runs a range ahead to keep writes rare.
+public final class IdAllocator {
+    private static final int KEYS_PER_WRITE = 256;
+
+    private final AtomicInteger nextKey;
+    private final Path stateFile; // null when nothing is persisted
+    private volatile int persistedMark; // keys below this are covered by the state file
+
+    public IdAllocator() {
+        this(1, null);
+    }
+
+    // Keys start at 1, or at the recorded mark when the state file exists
+    public IdAllocator(Path stateFile) {
+        this(readMark(stateFile), stateFile);
+    }
+
+    private IdAllocator(int firstKey, Path stateFile) {
+        this.nextKey = new AtomicInteger(firstKey);
+        this.stateFile = stateFile;
+        this.persistedMark = firstKey;
+    }
+
+    public int nextId() {
+        int key = nextKey.getAndIncrement();
+        // MAX_VALUE is refused since no mark can lie above it; past it the counter wraps negative
+        if (key < 0 || key == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Key space exhausted");
+        }
+        if (stateFile != null && key >= persistedMark) {
+            persistMark(key);
+        }
+        return key;
+    }
+
+    // Synchronized so marks are written in increasing order; callers whose key is covered
+    // by a mark another thread just wrote return without writing
+    private synchronized void persistMark(int key) {
+        if (key < persistedMark) {
+            return;
+        }
+        int mark = (int) Math.min(Integer.MAX_VALUE, key + 1L + KEYS_PER_WRITE);
+        try {
+            // Replace the file atomically, so a crash leaves the old mark or the new one
+            Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            Files.write(temp, Integer.toString(mark).getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record key high-water mark in " + stateFile, e);
+        }
+        persistedMark = mark;
+    }
+
+    private static int readMark(Path stateFile) {
+        if (!Files.exists(stateFile)) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(stateFile), StandardCharsets.US_ASCII).trim());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read key high-water mark from " + stateFile, e);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Corrupt key high-water mark in " + stateFile, e);
+        }
+    }
+}
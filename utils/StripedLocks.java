@@ -0,0 +1,56 @@
+package utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// A fixed pool of locks shared by many keys: each key always maps to the same stripe, so
+// operations on different keys rarely contend while memory stays constant. Keys that
+// share a stripe simply serialize, which is harmless because the locks are reentrant.
+public final class StripedLocks {
+    private final ReentrantLock[] stripes;
+
+    public StripedLocks(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(count);
+        if (size < count) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock forKey(int key) {
+        return stripes[stripeOf(key)];
+    }
+
+    // Index of the key's stripe, for state partitioned the same way as the locks
+    public int stripeOf(int key) {
+        // Spread sequential keys so neighbouring IDs land on different stripes
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    public int size() {
+        return stripes.length;
+    }
+
+    // Runs the action holding this key's stripe and then the other pool's stripe for its key.
+    // Callers that always take two pools in the same order can never each hold a lock the
+    // other is waiting for.
+    public <T> T withKeys(int key, StripedLocks others, int otherKey, Supplier<T> action) {
+        ReentrantLock first = forKey(key);
+        ReentrantLock second = others.forKey(otherKey);
+        first.lock();
+        second.lock();
+        try {
+            return action.get();
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+}
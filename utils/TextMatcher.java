@@ -0,0 +1,21 @@
+package utils;
+
+// Case- and accent-insensitive substring test. The query is normalized once, and records
+// are matched through their precomputed search keys (Book.getTitleKey() and the like),
+// so scanning a record allocates nothing.
+public final class TextMatcher {
+    private final String query;
+
+    public TextMatcher(String query) {
+        this.query = TextNormalizer.normalize(query);
+    }
+
+    // An empty query matches everything
+    public boolean isEmpty() {
+        return query.isEmpty();
+    }
+
+    public boolean matches(String searchKey) {
+        return searchKey.indexOf(query) >= 0;
+    }
+}
@@ -0,0 +1,94 @@
+package utils;
+
+import models.Book;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Random;
+
+// Measures the bytes the scanning thread allocates per record when matching titles through
+// TextMatcher and the cached search keys, next to the toLowerCase().contains() it replaced.
+// The matcher path should come out at 0 bytes per record; the check fails otherwise.
+// Run from the project root:
+//   java utils.TextMatcherBenchmark [books]
+public class TextMatcherBenchmark {
+    private static final int DEFAULT_BOOKS = 200_000;
+    private static final int ROUNDS = 5;
+    private static final String[] QUERIES = {"qu", "Ana", "\u00c9t", "zz", "the"};
+
+    public static void main(String[] args) {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Random random = new Random(13);
+        Book[] books = new Book[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            books[i] = new Book(i, randomTitle(random), "Author " + i, "isbn-" + i, LocalDate.ofEpochDay(i % 20_000),
+                    "fiction");
+        }
+        TextMatcher[] matchers = new TextMatcher[QUERIES.length];
+        for (int i = 0; i < QUERIES.length; i++) {
+            matchers[i] = new TextMatcher(QUERIES[i]);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        for (int round = 1; round <= ROUNDS; round++) {
+            long scanned = (long) bookCount * QUERIES.length;
+
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            int matcherHits = 0;
+            for (TextMatcher matcher : matchers) {
+                for (Book book : books) {
+                    if (matcher.matches(book.getTitleKey())) {
+                        matcherHits++;
+                    }
+                }
+            }
+            long matcherNanos = System.nanoTime() - start;
+            long matcherBytes = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            int lowerCaseHits = 0;
+            for (String query : QUERIES) {
+                String lowered = query.toLowerCase();
+                for (Book book : books) {
+                    if (book.getTitle().toLowerCase().contains(lowered)) {
+                        lowerCaseHits++;
+                    }
+                }
+            }
+            long lowerCaseNanos = System.nanoTime() - start;
+            long lowerCaseBytes = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+            System.out.printf("Round %d: %,d records scanned per path%n", round, scanned);
+            System.out.printf("         TextMatcher  %6.1f ms, %8.2f bytes/record, %,d matches%n",
+                    matcherNanos / 1e6, (double) matcherBytes / scanned, matcherHits);
+            System.out.printf("         toLowerCase  %6.1f ms, %8.2f bytes/record, %,d matches%n",
+                    lowerCaseNanos / 1e6, (double) lowerCaseBytes / scanned, lowerCaseHits);
+            // The first rounds run partly interpreted; once compiled the matcher must not allocate
+            if (round == ROUNDS && matcherBytes != 0) {
+                throw new IllegalStateException("Matching allocated " + matcherBytes + " bytes");
+            }
+        }
+    }
+
+    // Mixed-case words with the odd accented letter, so normalization has work to do
+    private static String randomTitle(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int words = 1 + random.nextInt(5);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                char letter = (char) ((j == 0 ? 'A' : 'a') + random.nextInt(26));
+                builder.append(random.nextInt(40) == 0 ? '\u00e9' : letter);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package utils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+// Shared normalization for the search indexes: lower-case text without accents split
+// into runs of letters and digits, so "J.R.R. Tolkien" yields j, r, r, tolkien and an
+// accented letter matches its plain form.
+public final class TextNormalizer {
+    private static final String[] NO_TOKENS = new String[0];
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (isAscii(lower)) {
+            return lower;
+        }
+        // Split accented letters into base letter and combining mark, then drop the marks
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                stripped.append(c);
+            }
+        }
+        return stripped.toString();
+    }
+
+    // Distinct tokens in order of first appearance
+    public static String[] tokenize(String text) {
+        return split(text, true);
+    }
+
+    // Every token including repeats, as needed for term frequencies
+    public static String[] tokenizeAll(String text) {
+        return split(text, false);
+    }
+
+    private static String[] split(String text, boolean distinct) {
+        String normalized = normalize(text);
+        String[] tokens = new String[8];
+        int count = 0;
+        int start = -1;
+
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = normalized.substring(start, i);
+                start = -1;
+                if (distinct && indexOf(tokens, count, token) >= 0) {
+                    continue;
+                }
+                if (count == tokens.length) {
+                    String[] grown = new String[count * 2];
+                    System.arraycopy(tokens, 0, grown, 0, count);
+                    tokens = grown;
+                }
+                tokens[count++] = token;
+            }
+        }
+
+        if (count == 0) {
+            return NO_TOKENS;
+        }
+        String[] result = new String[count];
+        System.arraycopy(tokens, 0, result, 0, count);
+        return result;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(String[] tokens, int count, String token) {
+        for (int i = 0; i < count; i++) {
+            if (tokens[i].equals(token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}